@@ -0,0 +1,40 @@
+package com.floye.coinflip.bench;
+
+import com.floye.coinflip.CoinFlipMod;
+import com.floye.coinflip.utils.EconomyHandler;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.List;
+
+/**
+ * Prépare le mod hors serveur : dossier de données temporaire, puis économie en mémoire.
+ * Doit être appelé avant tout accès à {@link CoinFlipMod}, dont l'initialisation statique
+ * charge la config et crée le manager.
+ */
+public final class BenchEnvironment {
+    public static final String DOLLARS = "impactor:dollars";
+    public static final String CREDIT = "impactor:credit";
+
+    private BenchEnvironment() {
+    }
+
+    public static synchronized InMemoryEconomy install(long latencyMicros, double failureRate, int resolverThreads) {
+        if (System.getProperty("coinflip.dataDir") == null) {
+            try {
+                System.setProperty("coinflip.dataDir", Files.createTempDirectory("coinflip-bench").toString());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        InMemoryEconomy economy = new InMemoryEconomy(List.of(DOLLARS, CREDIT), latencyMicros, failureRate, resolverThreads);
+        EconomyHandler.useService(economy.service());
+        return economy;
+    }
+
+    public static InMemoryEconomy install() {
+        return install(0, 0, 1);
+    }
+}
@@ -0,0 +1,227 @@
+package com.floye.coinflip.bench;
+
+import net.impactdev.impactor.api.economy.EconomyService;
+import net.impactdev.impactor.api.economy.accounts.Account;
+import net.impactdev.impactor.api.economy.currency.Currency;
+import net.impactdev.impactor.api.economy.currency.CurrencyProvider;
+import net.impactdev.impactor.api.economy.transactions.EconomyTransaction;
+import net.impactdev.impactor.api.economy.transactions.details.EconomyResultType;
+import net.kyori.adventure.key.Key;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Économie Impactor en mémoire pour les benchmarks et la simulation. Les interfaces
+ * Impactor sont implémentées par proxy : seules les méthodes appelées par le mod
+ * (account, currencies, balance, withdraw, deposit, result) ont un comportement.
+ * Latence et taux d'échec sont réglables pour reproduire un backend lent ou instable.
+ */
+public final class InMemoryEconomy implements AutoCloseable {
+    private static final class Wallet {
+        private BigDecimal balance = BigDecimal.ZERO;
+
+        synchronized BigDecimal balance() {
+            return balance;
+        }
+
+        synchronized boolean withdraw(BigDecimal amount) {
+            if (balance.compareTo(amount) < 0) return false;
+            balance = balance.subtract(amount);
+            return true;
+        }
+
+        synchronized void deposit(BigDecimal amount) {
+            balance = balance.add(amount);
+        }
+    }
+
+    private final Map<Key, Currency> currencies = new LinkedHashMap<>();
+    private final Currency primary;
+    private final Map<UUID, Map<Currency, Wallet>> wallets = new ConcurrentHashMap<>();
+    private final long latencyNanos;
+    private final double failureRate;
+    private final ExecutorService resolver;
+    private final EconomyService service;
+
+    public final LongAdder accountLookups = new LongAdder();
+    public final LongAdder withdrawals = new LongAdder();
+    public final LongAdder deposits = new LongAdder();
+    public final LongAdder injectedFailures = new LongAdder();
+
+    /**
+     * @param currencyKeys   clés des devises, la première est la devise principale
+     * @param latencyMicros  latence ajoutée à chaque résolution de compte et transaction (0 = aucune)
+     * @param failureRate    probabilité qu'une résolution ou transaction échoue
+     * @param resolverThreads threads qui complètent les résolutions de compte quand la latence est non nulle
+     */
+    public InMemoryEconomy(List<String> currencyKeys, long latencyMicros, double failureRate, int resolverThreads) {
+        for (String key : currencyKeys) {
+            Key parsed = Key.key(key);
+            Currency currency = stub(Currency.class, (proxy, method, args) ->
+                    method.getName().equals("key") ? parsed : null);
+            currencies.put(parsed, currency);
+        }
+        this.primary = currencies.values().iterator().next();
+        this.latencyNanos = TimeUnit.MICROSECONDS.toNanos(latencyMicros);
+        this.failureRate = failureRate;
+        this.resolver = latencyMicros > 0 ? Executors.newFixedThreadPool(resolverThreads, runnable -> {
+            Thread thread = new Thread(runnable, "InMemoryEconomy-Resolver");
+            thread.setDaemon(true);
+            return thread;
+        }) : null;
+
+        CurrencyProvider provider = stub(CurrencyProvider.class, (proxy, method, args) -> switch (method.getName()) {
+            case "primary" -> primary;
+            case "currency" -> Optional.ofNullable(currencies.get((Key) args[0]));
+            default -> null;
+        });
+        this.service = stub(EconomyService.class, (proxy, method, args) -> switch (method.getName()) {
+            case "currencies" -> provider;
+            case "account" -> account(args);
+            default -> null;
+        });
+    }
+
+    public EconomyService service() {
+        return service;
+    }
+
+    public void setBalance(UUID player, String currencyKey, BigDecimal amount) {
+        Wallet wallet = wallet(player, currency(currencyKey));
+        synchronized (wallet) {
+            wallet.balance = amount;
+        }
+    }
+
+    public BigDecimal balance(UUID player, String currencyKey) {
+        return wallet(player, currency(currencyKey)).balance();
+    }
+
+    // Somme de tous les soldes d'une devise
+    public BigDecimal total(String currencyKey) {
+        Currency currency = currency(currencyKey);
+        BigDecimal total = BigDecimal.ZERO;
+        for (Map<Currency, Wallet> accounts : wallets.values()) {
+            Wallet wallet = accounts.get(currency);
+            if (wallet != null) {
+                total = total.add(wallet.balance());
+            }
+        }
+        return total;
+    }
+
+    @Override
+    public void close() {
+        if (resolver != null) {
+            resolver.shutdownNow();
+        }
+    }
+
+    private Currency currency(String currencyKey) {
+        Currency currency = currencies.get(Key.key(currencyKey));
+        if (currency == null) {
+            throw new IllegalArgumentException("Devise inconnue : " + currencyKey);
+        }
+        return currency;
+    }
+
+    private Wallet wallet(UUID player, Currency currency) {
+        return wallets.computeIfAbsent(player, id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(currency, c -> new Wallet());
+    }
+
+    // account(UUID) ou account(Currency, UUID)
+    private CompletableFuture<Account> account(Object[] args) {
+        Currency currency = args.length > 1 ? (Currency) args[0] : primary;
+        UUID player = (UUID) args[args.length - 1];
+        accountLookups.increment();
+
+        if (resolver == null) {
+            return failNow()
+                    ? CompletableFuture.failedFuture(new IllegalStateException("Échec simulé"))
+                    : CompletableFuture.completedFuture(newAccount(player, currency));
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            pause();
+            if (failNow()) {
+                throw new IllegalStateException("Échec simulé");
+            }
+            return newAccount(player, currency);
+        }, resolver);
+    }
+
+    private Account newAccount(UUID player, Currency currency) {
+        Wallet wallet = wallet(player, currency);
+        return stub(Account.class, (proxy, method, args) -> switch (method.getName()) {
+            case "balance" -> wallet.balance();
+            case "withdraw" -> {
+                withdrawals.increment();
+                pause();
+                yield transaction(!failNow() && wallet.withdraw((BigDecimal) args[0]));
+            }
+            case "deposit" -> {
+                deposits.increment();
+                pause();
+                boolean success = !failNow();
+                if (success) {
+                    wallet.deposit((BigDecimal) args[0]);
+                }
+                yield transaction(success);
+            }
+            case "currency" -> currency;
+            case "owner", "uuid" -> player;
+            default -> null;
+        });
+    }
+
+    private static EconomyTransaction transaction(boolean success) {
+        EconomyResultType result = success ? EconomyResultType.SUCCESS : EconomyResultType.FAILED;
+        return stub(EconomyTransaction.class, (proxy, method, args) ->
+                method.getName().equals("result") ? result : null);
+    }
+
+    private boolean failNow() {
+        if (failureRate > 0 && ThreadLocalRandom.current().nextDouble() < failureRate) {
+            injectedFailures.increment();
+            return true;
+        }
+        return false;
+    }
+
+    private void pause() {
+        if (latencyNanos > 0) {
+            LockSupport.parkNanos(latencyNanos);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T> T stub(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            // Identité d'objet pour equals/hashCode/toString : les proxys servent de clés de map
+            switch (method.getName()) {
+                case "equals":
+                    if (method.getParameterCount() == 1) return proxy == args[0];
+                    break;
+                case "hashCode":
+                    if (method.getParameterCount() == 0) return System.identityHashCode(proxy);
+                    break;
+                case "toString":
+                    if (method.getParameterCount() == 0) return type.getSimpleName() + "@" + Integer.toHexString(System.identityHashCode(proxy));
+                    break;
+                default:
+                    break;
+            }
+            Object result = handler.invoke(proxy, method, args == null ? new Object[0] : args);
+            if (result == null && method.isDefault()) {
+                return InvocationHandler.invokeDefault(proxy, method, args);
+            }
+            return result;
+        });
+    }
+}
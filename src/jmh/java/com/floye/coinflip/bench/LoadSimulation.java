@@ -0,0 +1,272 @@
+package com.floye.coinflip.bench;
+
+import com.floye.coinflip.CoinFlipBook;
+import com.floye.coinflip.CoinFlipManager;
+import com.floye.coinflip.CoinFlipMetrics;
+import com.floye.coinflip.CoinFlipMod;
+import com.floye.coinflip.utils.EconomyHandler;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Simulation de charge sans serveur : des milliers de joueurs synthétiques créent, passent par
+ * la file, rejoignent, annulent et se déconnectent en parallèle, contre l'économie en mémoire (latence et taux
+ * d'échec réglables). Un thread joue le rôle du thread serveur et appelle tick(null) à 20 TPS.
+ * <p>
+ * À la fin : débit et latences par opération, threads, demandes de file restées en attente
+ * alors qu'un flip compatible plus ancien était ouvert, puis vérification des invariants
+ * (argent conservé, aucun flip rejoint deux fois, limite de flips par joueur respectée).
+ * Code de sortie 1 si un invariant est violé.
+ * <p>
+ * {@code ./gradlew simulate -Pplayers=2000 -Pseconds=30 -Pworkers=16 -PlatencyMicros=200 -PfailureRate=0.01}
+ */
+public final class LoadSimulation {
+    private enum Operation {
+        CREATE, QUEUE, JOIN, CANCEL, DISCONNECT
+    }
+
+    private static final long START_BALANCE = 1_000_000;
+    private static final String[] CURRENCIES = {BenchEnvironment.DOLLARS, BenchEnvironment.DOLLARS, BenchEnvironment.DOLLARS, BenchEnvironment.CREDIT};
+
+    private final int players;
+    private final int seconds;
+    private final int workers;
+
+    private final InMemoryEconomy economy;
+    private final CoinFlipManager manager;
+    private final UUID[] playerIds;
+
+    private final Map<Operation, CoinFlipMetrics.Histogram> latencies = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> succeeded = new EnumMap<>(Operation.class);
+    private final Map<UUID, AtomicInteger> joinsPerFlip = new ConcurrentHashMap<>();
+    private final List<String> violations = Collections.synchronizedList(new ArrayList<>());
+    private final LongAdder timeouts = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final LongAdder missedQueueMatches = new LongAdder();
+    private volatile int maxFlipsSeenForOnePlayer = 0;
+
+    private LoadSimulation(int players, int seconds, int workers, long latencyMicros, double failureRate) {
+        this.players = players;
+        this.seconds = seconds;
+        this.workers = workers;
+        this.economy = BenchEnvironment.install(latencyMicros, failureRate, Math.max(2, workers / 2));
+        this.manager = CoinFlipMod.coinFlipManager;
+
+        playerIds = new UUID[players];
+        for (int i = 0; i < players; i++) {
+            playerIds[i] = UUID.randomUUID();
+            for (String currency : List.of(BenchEnvironment.DOLLARS, BenchEnvironment.CREDIT)) {
+                economy.setBalance(playerIds[i], currency, BigDecimal.valueOf(START_BALANCE));
+            }
+        }
+        for (Operation operation : Operation.values()) {
+            latencies.put(operation, new CoinFlipMetrics.Histogram());
+            succeeded.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int split = arg.indexOf('=');
+            if (split > 0) {
+                options.put(arg.substring(0, split).replaceFirst("^--", ""), arg.substring(split + 1));
+            }
+        }
+
+        LoadSimulation simulation = new LoadSimulation(
+                Integer.parseInt(options.getOrDefault("players", "2000")),
+                Integer.parseInt(options.getOrDefault("seconds", "30")),
+                Integer.parseInt(options.getOrDefault("workers", "16")),
+                Long.parseLong(options.getOrDefault("latencyMicros", "200")),
+                Double.parseDouble(options.getOrDefault("failureRate", "0.01")));
+        boolean ok = simulation.run();
+        System.exit(ok ? 0 : 1);
+    }
+
+    private boolean run() throws InterruptedException {
+        ScheduledExecutorService server = Executors.newSingleThreadScheduledExecutor(runnable -> new Thread(runnable, "Simulated-Server"));
+        server.scheduleAtFixedRate(this::serverTick, 50, 50, TimeUnit.MILLISECONDS);
+
+        ExecutorService pool = Executors.newFixedThreadPool(workers, runnable -> new Thread(runnable, "Simulated-Player"));
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+        long start = System.nanoTime();
+        for (int i = 0; i < workers; i++) {
+            pool.execute(() -> {
+                while (System.nanoTime() < deadline) {
+                    step();
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(seconds + 60L, TimeUnit.SECONDS);
+        double elapsed = (System.nanoTime() - start) / 1e9;
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        int liveThreads = threads.getThreadCount();
+        int peakThreads = threads.getPeakThreadCount();
+
+        // Plus aucune opération en cours : on laisse la file de règlement se vider
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(120);
+        while (manager.getSettlement().size() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        server.shutdown();
+        server.awaitTermination(5, TimeUnit.SECONDS);
+
+        checkInvariants();
+        report(elapsed, liveThreads, peakThreads);
+        economy.close();
+        return violations.isEmpty();
+    }
+
+    private void serverTick() {
+        try {
+            manager.tick(null);
+            for (UUID player : playerIds) {
+                int open = manager.getFlipBook().countByCreator(player);
+                if (open > maxFlipsSeenForOnePlayer) {
+                    maxFlipsSeenForOnePlayer = open;
+                }
+            }
+        } catch (RuntimeException e) {
+            violations.add("Exception dans le tick serveur : " + e);
+        }
+    }
+
+    private void step() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        UUID player = playerIds[random.nextInt(players)];
+        int roll = random.nextInt(100);
+        Operation operation = roll < 30 ? Operation.CREATE : roll < 45 ? Operation.QUEUE : roll < 75 ? Operation.JOIN
+                : roll < 90 ? Operation.CANCEL : Operation.DISCONNECT;
+
+        long begin = System.nanoTime();
+        try {
+            boolean success = switch (operation) {
+                case CREATE -> await(manager.createFlip(player, "sim", random.nextInt(1, 1000),
+                        CURRENCIES[random.nextInt(CURRENCIES.length)]));
+                // Petits montants ronds : les demandes de file se retrouvent souvent dans la même case
+                case QUEUE -> queue(player, 10 * random.nextInt(1, 11), CURRENCIES[random.nextInt(CURRENCIES.length)]);
+                case JOIN -> join(player, random);
+                case CANCEL -> await(manager.cancelFlip(player)).success;
+                case DISCONNECT -> {
+                    manager.onPlayerDisconnect(player);
+                    EconomyHandler.accounts().evict(player);
+                    yield true;
+                }
+            };
+            if (success) {
+                succeeded.get(operation).increment();
+            }
+        } catch (TimeoutException e) {
+            timeouts.increment();
+        } catch (ExecutionException | RuntimeException e) {
+            // Échecs simulés de l'économie : attendus, comptés à part
+            errors.increment();
+        } finally {
+            latencies.get(operation).record((System.nanoTime() - begin) / 1000);
+        }
+    }
+
+    private boolean queue(UUID player, int amount, String currency) throws ExecutionException, TimeoutException {
+        long requestedAt = System.currentTimeMillis();
+        CoinFlipManager.QueueResult result = await(manager.queueFlip(player, "sim", amount, currency));
+
+        // Un flip compatible d'un autre joueur, ouvert avant la demande et toujours libre : appariement manqué.
+        // Les flips créés hors file peuvent arriver pendant la demande, d'où la comparaison des dates
+        if (result == CoinFlipManager.QueueResult.WAITING && manager.getFlipBook().oldestMatch(currency, amount,
+                flip -> !flip.creator.equals(player) && flip.createdAt < requestedAt) != null) {
+            missedQueueMatches.increment();
+        }
+        return result != CoinFlipManager.QueueResult.FAILED;
+    }
+
+    private boolean join(UUID joiner, ThreadLocalRandom random) throws ExecutionException, TimeoutException {
+        List<CoinFlipManager.CoinFlip> page = manager.getFlipBook().page(CoinFlipBook.Sort.NEWEST, null, null, 20);
+        if (page.isEmpty()) return false;
+
+        CoinFlipManager.CoinFlip flip = page.get(random.nextInt(page.size()));
+        if (flip.creator.equals(joiner)) return false;
+
+        boolean joined = await(manager.joinFlip(joiner, flip.creator, flip.id));
+        if (joined && joinsPerFlip.computeIfAbsent(flip.id, id -> new AtomicInteger()).incrementAndGet() > 1) {
+            violations.add("Flip rejoint plusieurs fois : " + flip.id);
+        }
+        return joined;
+    }
+
+    private static <T> T await(CompletableFuture<T> future) throws ExecutionException, TimeoutException {
+        try {
+            return future.get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private void checkInvariants() {
+        if (maxFlipsSeenForOnePlayer > CoinFlipMod.config.maxCoinFlipsPerPlayer) {
+            violations.add("Limite de flips par joueur dépassée : " + maxFlipsSeenForOnePlayer
+                    + " > " + CoinFlipMod.config.maxCoinFlipsPerPlayer);
+        }
+        if (timeouts.sum() > 0) {
+            violations.add(timeouts.sum() + " opérations sans réponse après 30 s");
+        }
+        if (manager.getSettlement().size() > 0) {
+            violations.add("File de règlement non vidée : " + manager.getSettlement().size() + " groupes");
+        }
+
+        // Argent conservé : soldes + mises des flips encore ouverts + taxe prélevée = argent de départ
+        for (String currency : List.of(BenchEnvironment.DOLLARS, BenchEnvironment.CREDIT)) {
+            BigDecimal initial = BigDecimal.valueOf(START_BALANCE).multiply(BigDecimal.valueOf(players));
+            BigDecimal escrow = BigDecimal.ZERO;
+            for (CoinFlipManager.CoinFlip flip : manager.getFlipBook().byCurrency(currency)) {
+                escrow = escrow.add(BigDecimal.valueOf(flip.amount));
+            }
+            BigDecimal accounted = economy.total(currency)
+                    .add(escrow)
+                    .add(BigDecimal.valueOf(CoinFlipMod.metrics.taxCollected(currency)));
+
+            // Tolérance : gains et taxes sont des doubles, arrondis à chaque flip
+            BigDecimal drift = accounted.subtract(initial).abs();
+            double tolerance = 1e-6 * Math.max(1, CoinFlipMod.metrics.get(CoinFlipMetrics.Counter.RESOLVED));
+            if (drift.doubleValue() > tolerance) {
+                violations.add(String.format("Argent %s pour %s : écart de %s (départ %s, compté %s)",
+                        accounted.compareTo(initial) > 0 ? "créé" : "détruit", currency, drift.toPlainString(),
+                        initial.toPlainString(), accounted.toPlainString()));
+            }
+        }
+    }
+
+    private void report(double elapsed, int liveThreads, int peakThreads) {
+        System.out.printf("=== Simulation : %d joueurs, %d workers, %.1f s ===%n", players, workers, elapsed);
+        for (Operation operation : Operation.values()) {
+            CoinFlipMetrics.Histogram histogram = latencies.get(operation);
+            System.out.printf("%-10s %8d ops (%6.0f/s) réussies=%-8d p50=%dµs p99=%dµs p999=%dµs max=%dµs%n",
+                    operation.name().toLowerCase(), histogram.count(), histogram.count() / elapsed,
+                    succeeded.get(operation).sum(), histogram.percentile(0.50), histogram.percentile(0.99),
+                    histogram.percentile(0.999), histogram.max());
+        }
+        System.out.printf("Erreurs simulées remontées : %d, échecs injectés par l'économie : %d%n",
+                errors.sum(), economy.injectedFailures.sum());
+        System.out.printf("Économie : %d résolutions de compte, %d retraits, %d dépôts%n",
+                economy.accountLookups.sum(), economy.withdrawals.sum(), economy.deposits.sum());
+        System.out.printf("Threads : %d vivants, pic %d%n", liveThreads, peakThreads);
+        System.out.printf("File : %d demandes en attente malgré un flip compatible plus ancien%n", missedQueueMatches.sum());
+        CoinFlipMod.metrics.report().forEach(System.out::println);
+
+        if (violations.isEmpty()) {
+            System.out.println("Invariants : OK");
+        } else {
+            System.out.println("Invariants violés :");
+            violations.stream().distinct().limit(50).forEach(violation -> System.out.println("  - " + violation));
+        }
+    }
+}
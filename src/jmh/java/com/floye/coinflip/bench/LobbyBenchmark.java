@@ -0,0 +1,64 @@
+package com.floye.coinflip.bench;
+
+import com.floye.coinflip.CoinFlipBook;
+import com.floye.coinflip.CoinFlipManager;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Construction d'une page du lobby à partir du carnet : première page, page au milieu
+ * de l'ordre (curseur) et page filtrée par devise, pour 10, 1k et 100k flips ouverts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LobbyBenchmark {
+    private static final int PAGE_SIZE = 45;
+
+    @Param({"10", "1000", "100000"})
+    public int flips;
+
+    @Param({"NEWEST", "AMOUNT_DESC"})
+    public CoinFlipBook.Sort sort;
+
+    private CoinFlipBook book;
+    private CoinFlipManager.CoinFlip middle;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchEnvironment.install();
+        book = new CoinFlipBook();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < flips; i++) {
+            String currency = i % 4 == 0 ? BenchEnvironment.CREDIT : BenchEnvironment.DOLLARS;
+            book.add(new CoinFlipManager.CoinFlip(UUID.randomUUID(), random.nextInt(1, 10_000), currency));
+        }
+
+        int index = 0;
+        for (CoinFlipManager.CoinFlip flip : book.sorted(sort, null)) {
+            if (index++ == flips / 2) {
+                middle = flip;
+                break;
+            }
+        }
+    }
+
+    @Benchmark
+    public List<CoinFlipManager.CoinFlip> firstPage() {
+        return book.page(sort, null, null, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<CoinFlipManager.CoinFlip> middlePage() {
+        return book.page(sort, null, middle, PAGE_SIZE);
+    }
+
+    @Benchmark
+    public List<CoinFlipManager.CoinFlip> filteredFirstPage() {
+        return book.page(sort, BenchEnvironment.CREDIT, null, PAGE_SIZE);
+    }
+}
@@ -0,0 +1,75 @@
+package com.floye.coinflip.bench;
+
+import com.floye.coinflip.CoinFlipManager;
+import com.floye.coinflip.CoinFlipMod;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Création, jonction et annulation d'un flip de bout en bout (carnet, roue d'expiration,
+ * journal, file de règlement) contre l'économie en mémoire, sans latence.
+ * Un tick « serveur » est joué après chaque opération pour vider les files comme en jeu.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ManagerBenchmark {
+    private static final int PLAYERS = 1024;
+
+    private InMemoryEconomy economy;
+    private CoinFlipManager manager;
+    private UUID[] players;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        economy = BenchEnvironment.install();
+        manager = CoinFlipMod.coinFlipManager;
+
+        players = new UUID[PLAYERS];
+        for (int i = 0; i < PLAYERS; i++) {
+            players[i] = UUID.randomUUID();
+            economy.setBalance(players[i], BenchEnvironment.DOLLARS, BigDecimal.valueOf(1_000_000_000L));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        CoinFlipMod.clearAllFlips();
+        economy.close();
+    }
+
+    // Joueurs pris à tour de rôle : jamais de limite de flips par joueur atteinte
+    private UUID nextPlayer() {
+        UUID player = players[next];
+        next = (next + 1) % PLAYERS;
+        return player;
+    }
+
+    @Benchmark
+    public boolean createThenCancel() {
+        UUID creator = nextPlayer();
+        boolean created = manager.createFlip(creator, "bench", 100, BenchEnvironment.DOLLARS).join();
+        boolean cancelled = manager.cancelFlip(creator).join().success;
+        manager.tick(null);
+        return created && cancelled;
+    }
+
+    @Benchmark
+    public boolean createThenJoin() {
+        UUID creator = nextPlayer();
+        UUID joiner = nextPlayer();
+        manager.createFlip(creator, "bench", 100, BenchEnvironment.DOLLARS).join();
+
+        boolean joined = false;
+        for (CoinFlipManager.CoinFlip flip : manager.getFlipBook().byCreator(creator)) {
+            joined = manager.joinFlip(joiner, creator, flip.id).join();
+            break;
+        }
+        manager.tick(null);
+        return joined;
+    }
+}
@@ -0,0 +1,66 @@
+package com.floye.coinflip.bench;
+
+import com.floye.coinflip.CoinFlipConfig;
+import com.floye.coinflip.CoinFlipMessages.Args;
+import com.floye.coinflip.CoinFlipMessages.MessageKey;
+import com.floye.coinflip.CoinFlipMessages.Placeholder;
+import com.floye.coinflip.CoinFlipMod;
+import net.minecraft.text.Text;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendu d'un message de la config : modèles précompilés contre l'ancien enchaînement de
+ * String.replace (reproduit ici comme référence), puis recherche d'alias de devise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MessageBenchmark {
+    private CoinFlipConfig config;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        BenchEnvironment.install();
+        config = CoinFlipMod.config;
+    }
+
+    @Benchmark
+    public Text compiledTemplate() {
+        return config.getText(MessageKey.BROADCAST_FLIP_CREATION,
+                Args.of(Placeholder.PLAYER, "Steve")
+                        .with(Placeholder.AMOUNT, "100.00")
+                        .with(Placeholder.CURRENCY, "dollars"));
+    }
+
+    // Référence : l'ancien getMessage(key, Map) suivi de Text.literal
+    @Benchmark
+    public Text legacyReplace() {
+        String message = config.messages.broadcastFlipCreation;
+        for (Map.Entry<String, String> entry : Map.of(
+                "player", "Steve",
+                "amount", "100.00",
+                "currency", "dollars").entrySet()) {
+            message = message.replace("%" + entry.getKey() + "%", entry.getValue());
+        }
+        return Text.literal(message);
+    }
+
+    @Benchmark
+    public String aliasFromKey() {
+        return config.getCurrencyAliasFromKey(BenchEnvironment.CREDIT);
+    }
+
+    // Référence : l'ancienne recherche linéaire sur currencyAliases
+    @Benchmark
+    public String aliasFromKeyLinearScan() {
+        for (Map.Entry<String, String> entry : config.currencyAliases.entrySet()) {
+            if (entry.getValue().equals(BenchEnvironment.CREDIT)) {
+                return entry.getKey();
+            }
+        }
+        return BenchEnvironment.CREDIT;
+    }
+}
@@ -0,0 +1,104 @@
+package com.floye.coinflip.bench;
+
+import com.floye.coinflip.CoinFlipJournal;
+import com.floye.coinflip.CoinFlipManager;
+import com.floye.coinflip.CoinFlipMod;
+import com.floye.coinflip.CoinFlipSettlement;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Persistance pour 10, 1k et 100k flips ouverts, snapshot binaire ou JSON, sur les mêmes
+ * classes que le writer :
+ * - snapshot : ce que coûte saveFlips() une fois le writer passé (compaction complète) ;
+ * - journalAppend : un lot d'événements, le cas courant ;
+ * - loadAndRefund : relecture en flux snapshot + journal, crédits regroupés par lots et
+ *   écriture du fichier de règlement, comme loadAndRefundFlips() au démarrage.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class PersistenceBenchmark {
+    @Param({"10", "1000", "100000"})
+    public int flips;
+
+    @Param({"binary", "json"})
+    public String format;
+
+    private Path dir;
+    private List<CoinFlipManager.CoinFlip> open;
+    private List<CoinFlipJournal.Entry> events;
+    private CoinFlipJournal journal;
+    private CoinFlipSettlement settlement;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        BenchEnvironment.install();
+        CoinFlipMod.config.snapshotFormat = format;
+        dir = Files.createTempDirectory("coinflip-persistence");
+
+        open = new ArrayList<>(flips);
+        events = new ArrayList<>(flips);
+        UUID[] creators = new UUID[Math.max(1, flips / 2)];
+        for (int i = 0; i < creators.length; i++) {
+            creators[i] = UUID.randomUUID();
+        }
+        for (int i = 0; i < flips; i++) {
+            CoinFlipManager.CoinFlip flip = new CoinFlipManager.CoinFlip(creators[i % creators.length], 100 + i, BenchEnvironment.DOLLARS);
+            open.add(flip);
+            events.add(CoinFlipJournal.Entry.of(CoinFlipJournal.EventType.CREATED, flip));
+        }
+    }
+
+    @Setup(Level.Invocation)
+    public void freshFiles() throws IOException {
+        if (journal != null) {
+            journal.close();
+        }
+        journal = new CoinFlipJournal(dir.resolve("coinflip_data.bin"), dir.resolve("coinflip_data.json"),
+                dir.resolve("coinflip_journal.jsonl"));
+        journal.clear();
+        // État laissé par un crash : snapshot complet, rien de remboursé
+        journal.compact(open);
+        Files.deleteIfExists(dir.resolve("coinflip_settlement.json"));
+        settlement = new CoinFlipSettlement(dir.resolve("coinflip_settlement.json"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        journal.close();
+    }
+
+    @Benchmark
+    public void snapshot() throws IOException {
+        journal.compact(open);
+    }
+
+    @Benchmark
+    public void journalAppend() throws IOException {
+        journal.append(events);
+    }
+
+    @Benchmark
+    public int loadAndRefund() throws IOException {
+        int[] refunded = {0};
+        CoinFlipSettlement.RefundBatch refunds = settlement.refundBatch(1024);
+        journal.replay(entry -> {
+            refunds.add(entry.creator, entry.currency, entry.amount, entry.id);
+            refunded[0]++;
+        });
+        refunds.commit();
+        settlement.flush();
+        journal.clear();
+        return refunded[0];
+    }
+}
@@ -0,0 +1,47 @@
+package com.floye.coinflip;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Moteur d'animation partagé, cadencé par le tick serveur.
+ * Toutes les animations en cours avancent d'une image dans la même passe,
+ * sans aucun thread dédié quel que soit leur nombre.
+ */
+public class CoinFlipAnimationEngine {
+    // Animations démarrées depuis n'importe quel thread, ouvertes au prochain tick
+    private final Queue<CoinFlipAnimationGui> pending = new ConcurrentLinkedQueue<>();
+    // Uniquement manipulée sur le thread serveur
+    private final List<CoinFlipAnimationGui> running = new ArrayList<>();
+    private long ticks = 0;
+
+    public void start(CoinFlipAnimationGui animation) {
+        pending.add(animation);
+    }
+
+    public void tick() {
+        CoinFlipAnimationGui started;
+        while ((started = pending.poll()) != null) {
+            if (started.getPlayer().isRemoved()) continue;
+            started.open();
+            running.add(started);
+        }
+
+        int frameTicks = Math.max(1, CoinFlipMod.config.gui.animationFrameTicks);
+        if (++ticks % frameTicks != 0 || running.isEmpty()) return;
+
+        Iterator<CoinFlipAnimationGui> iterator = running.iterator();
+        while (iterator.hasNext()) {
+            if (!iterator.next().advance()) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public int size() {
+        return running.size() + pending.size();
+    }
+}
@@ -1,5 +1,8 @@
 package com.floye.coinflip;
 
+import com.floye.coinflip.CoinFlipMessages.Args;
+import com.floye.coinflip.CoinFlipMessages.MessageKey;
+import com.floye.coinflip.CoinFlipMessages.Placeholder;
 import eu.pb4.sgui.api.elements.GuiElementBuilder;
 import eu.pb4.sgui.api.gui.SimpleGui;
 import eu.pb4.sgui.api.GuiHelpers;
@@ -9,14 +12,12 @@ import net.minecraft.screen.ScreenHandlerType;
 import net.minecraft.server.network.ServerPlayerEntity;
 import net.minecraft.sound.SoundCategory;
 import net.minecraft.sound.SoundEvent;
+import net.minecraft.text.ClickEvent;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 import net.minecraft.util.Identifier;
 
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 public class CoinFlipAnimationGui extends SimpleGui {
     private final ServerPlayerEntity player;
@@ -24,11 +25,9 @@ public class CoinFlipAnimationGui extends SimpleGui {
     private final boolean isWinner;
     private int animationStep = 0;
     private boolean isAnimationRunning = true;
-    private ScheduledExecutorService executor;
 
     public CoinFlipAnimationGui(ServerPlayerEntity player, CoinFlipManager.CoinFlip flip, boolean isWinner) {
         super(ScreenHandlerType.GENERIC_9X3, player, false);
-        CoinFlipMod.LOGGER.info("CoinFlipAnimationGui CONSTRUCTEUR DÉMARRÉ pour joueur {}", player.getName().getString());
         this.player = player;
         this.flip = flip;
         this.isWinner = isWinner;
@@ -38,8 +37,6 @@ public class CoinFlipAnimationGui extends SimpleGui {
         this.setTitle(Text.literal(CoinFlipMod.config.gui.animationTitle)
                 .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.primaryColor)));
         initializeGui();
-        this.open();
-        CoinFlipMod.LOGGER.info("CoinFlipAnimationGui CONSTRUCTEUR FINI et initializeGui() terminé pour joueur {}", player.getName().getString());
     }
 
     private void initializeGui() {
@@ -49,20 +46,29 @@ public class CoinFlipAnimationGui extends SimpleGui {
         startCoinFlipAnimation();
     }
 
+    // L'ouverture et les images sont pilotées par le moteur partagé, sur le thread serveur
     private void startCoinFlipAnimation() {
         isAnimationRunning = true;
         animationStep = 0;
-        executor = Executors.newSingleThreadScheduledExecutor();
-        executor.scheduleAtFixedRate(() -> {
-            if (!isAnimationRunning) return;
-            player.getServer().execute(() -> updateAnimation());
-            animationStep++;
-            if (animationStep >= 20) {
-                isAnimationRunning = false;
-                player.getServer().execute(() -> showResult());
-                executor.shutdown();
-            }
-        }, 0, 200, TimeUnit.MILLISECONDS);
+        CoinFlipMod.coinFlipManager.getAnimationEngine().start(this);
+    }
+
+    /**
+     * Avance l'animation d'une image.
+     *
+     * @return false quand l'animation est terminée ou a été fermée
+     */
+    boolean advance() {
+        if (!isAnimationRunning) return false;
+
+        updateAnimation();
+        animationStep++;
+        if (animationStep >= CoinFlipMod.config.gui.animationFrames) {
+            isAnimationRunning = false;
+            showResult();
+            return false;
+        }
+        return true;
     }
 
     private void updateAnimation() {
@@ -111,7 +117,7 @@ public class CoinFlipAnimationGui extends SimpleGui {
         double pot = flip.getAmount() * 2;
         String currencyAlias = CoinFlipMod.config.getCurrencyAliasFromKey(flip.currency);
 
-        double taxPercent = CoinFlipMod.config.getTaxPercentageForCurrency(currencyAlias);
+        double taxPercent = CoinFlipMod.config.getTaxPercentageForKey(flip.currency);
         double taxAmount = pot * (taxPercent / 100.0);
         double winnerAmount = pot - taxAmount;
 
@@ -123,14 +129,14 @@ public class CoinFlipAnimationGui extends SimpleGui {
 
             message = String.format("You won %s %s (tax: %s, %.2f%%)",
                     displayAmount,
-                    CoinFlipMod.config.getCurrencyAliasFromKey(flip.currency),
+                    currencyAlias,
                     taxDisplay,
                     taxPercent);
         } else {
             String displayAmount = String.format("%.2f", flip.getAmount());
             message = String.format("You lost %s %s",
                     displayAmount,
-                    CoinFlipMod.config.getCurrencyAliasFromKey(flip.currency));
+                    currencyAlias);
         }
 
         // Jouer le son de victoire/défaite
@@ -171,15 +177,17 @@ public class CoinFlipAnimationGui extends SimpleGui {
 
         // Envoi aussi le message dans le chat
         player.sendMessage(Text.literal(message).formatted(color), false);
+        // Reçu du tirage vérifiable : un clic prépare la commande de vérification
+        String verifyCommand = "/coinflip verify " + flip.id;
+        player.sendMessage(CoinFlipMod.config.getText(MessageKey.FAIRNESS_RECEIPT, Args.of(Placeholder.ID, flip.id.toString()))
+                .styled(style -> style.withClickEvent(new ClickEvent(ClickEvent.Action.SUGGEST_COMMAND, verifyCommand))), false);
     }
 
     @Override
     public void onClose() {
         super.onClose();
 
-        if (executor != null && !executor.isShutdown()) {
-            executor.shutdown();
-        }
+        isAnimationRunning = false;
         if (!player.isRemoved()) {
             CoinFlipMod.coinFlipManager.removeActiveAnimation(player.getUuid());
         }
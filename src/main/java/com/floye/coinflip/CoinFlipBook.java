@@ -0,0 +1,250 @@
+package com.floye.coinflip;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Predicate;
+
+/**
+ * Carnet des CoinFlips ouverts, sûr entre threads (serveur, callbacks Impactor, writer).
+ * Index primaire par id, index secondaires par créateur, devise et montant, plus le carnet
+ * d'ordres (devise, montant) utilisé par le mode file pour apparier instantanément.
+ * Les vues retournées sont faiblement cohérentes : on les parcourt sans copie ni verrou.
+ */
+public class CoinFlipBook {
+    // Ordres proposés par le lobby, chacun servi par un index trié maintenu à l'ajout/retrait
+    public enum Sort {
+        AMOUNT_ASC,
+        AMOUNT_DESC,
+        NEWEST,
+        EXPIRING_SOON;
+
+        public Sort next() {
+            return values()[(ordinal() + 1) % values().length];
+        }
+    }
+
+    // L'id départage les égalités : deux flips distincts ne sont jamais confondus par un index
+    private static final Comparator<CoinFlipManager.CoinFlip> BY_AMOUNT = Comparator
+            .<CoinFlipManager.CoinFlip>comparingInt(flip -> flip.amount)
+            .thenComparingLong(flip -> flip.createdAt)
+            .thenComparing(flip -> flip.id);
+    private static final Comparator<CoinFlipManager.CoinFlip> BY_NEWEST = Comparator
+            .<CoinFlipManager.CoinFlip>comparingLong(flip -> -flip.createdAt)
+            .thenComparing(flip -> flip.id);
+    private static final Comparator<CoinFlipManager.CoinFlip> BY_EXPIRY = Comparator
+            .<CoinFlipManager.CoinFlip>comparingLong(flip -> flip.expiresAt)
+            .thenComparing(flip -> flip.id);
+    private static final Comparator<CoinFlipManager.CoinFlip> BY_AGE = Comparator
+            .<CoinFlipManager.CoinFlip>comparingLong(flip -> flip.createdAt)
+            .thenComparing(flip -> flip.id);
+
+    // Les deux mises d'un flip sont égales : seuls des flips de même devise et même montant s'apparient
+    private record MatchKey(String currency, int amount) {
+    }
+
+    private static final class OrderedIndex {
+        final NavigableSet<CoinFlipManager.CoinFlip> byAmount = new ConcurrentSkipListSet<>(BY_AMOUNT);
+        final NavigableSet<CoinFlipManager.CoinFlip> byNewest = new ConcurrentSkipListSet<>(BY_NEWEST);
+        final NavigableSet<CoinFlipManager.CoinFlip> byExpiry = new ConcurrentSkipListSet<>(BY_EXPIRY);
+
+        void add(CoinFlipManager.CoinFlip flip) {
+            byAmount.add(flip);
+            byNewest.add(flip);
+            byExpiry.add(flip);
+        }
+
+        void remove(CoinFlipManager.CoinFlip flip) {
+            byAmount.remove(flip);
+            byNewest.remove(flip);
+            byExpiry.remove(flip);
+        }
+
+        NavigableSet<CoinFlipManager.CoinFlip> sorted(Sort sort) {
+            return switch (sort) {
+                case AMOUNT_ASC -> byAmount;
+                case AMOUNT_DESC -> byAmount.descendingSet();
+                case NEWEST -> byNewest;
+                case EXPIRING_SOON -> byExpiry;
+            };
+        }
+    }
+
+    private final ConcurrentMap<UUID, CoinFlipManager.CoinFlip> byId = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, Set<CoinFlipManager.CoinFlip>> byCreator = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, Set<CoinFlipManager.CoinFlip>> byCurrency = new ConcurrentHashMap<>();
+    private final ConcurrentNavigableMap<Integer, Set<CoinFlipManager.CoinFlip>> byAmount = new ConcurrentSkipListMap<>();
+    private final Collection<CoinFlipManager.CoinFlip> all = Collections.unmodifiableCollection(byId.values());
+    private final OrderedIndex ordered = new OrderedIndex();
+    // Une entrée par devise configurée : on ne les retire pas, leur nombre reste petit
+    private final ConcurrentMap<String, OrderedIndex> orderedByCurrency = new ConcurrentHashMap<>();
+    // Carnet d'ordres : du plus ancien au plus récent dans chaque case, premier arrivé premier servi
+    private final ConcurrentMap<MatchKey, NavigableSet<CoinFlipManager.CoinFlip>> byMatch = new ConcurrentHashMap<>();
+
+    /**
+     * @return false si un flip avec le même id est déjà présent
+     */
+    public boolean add(CoinFlipManager.CoinFlip flip) {
+        if (byId.putIfAbsent(flip.id, flip) != null) {
+            return false;
+        }
+        index(byCreator, flip.creator, flip);
+        index(byCurrency, flip.currency, flip);
+        index(byAmount, flip.amount, flip);
+        ordered.add(flip);
+        orderedByCurrency.computeIfAbsent(flip.currency, key -> new OrderedIndex()).add(flip);
+        byMatch.compute(new MatchKey(flip.currency, flip.amount), (key, flips) -> {
+            if (flips == null) {
+                flips = new ConcurrentSkipListSet<>(BY_AGE);
+            }
+            flips.add(flip);
+            return flips;
+        });
+        return true;
+    }
+
+    /**
+     * @return true uniquement pour l'appelant qui a effectivement retiré le flip
+     */
+    public boolean remove(CoinFlipManager.CoinFlip flip) {
+        if (!byId.remove(flip.id, flip)) {
+            return false;
+        }
+        unindex(byCreator, flip.creator, flip);
+        unindex(byCurrency, flip.currency, flip);
+        unindex(byAmount, flip.amount, flip);
+        ordered.remove(flip);
+        OrderedIndex currencyIndex = orderedByCurrency.get(flip.currency);
+        if (currencyIndex != null) {
+            currencyIndex.remove(flip);
+        }
+        byMatch.computeIfPresent(new MatchKey(flip.currency, flip.amount), (key, flips) -> {
+            flips.remove(flip);
+            return flips.isEmpty() ? null : flips;
+        });
+        return true;
+    }
+
+    public CoinFlipManager.CoinFlip get(UUID flipId) {
+        return byId.get(flipId);
+    }
+
+    public boolean contains(CoinFlipManager.CoinFlip flip) {
+        return byId.get(flip.id) == flip;
+    }
+
+    public Collection<CoinFlipManager.CoinFlip> all() {
+        return all;
+    }
+
+    public int size() {
+        return byId.size();
+    }
+
+    public Collection<CoinFlipManager.CoinFlip> byCreator(UUID creator) {
+        return view(byCreator.get(creator));
+    }
+
+    public int countByCreator(UUID creator) {
+        Set<CoinFlipManager.CoinFlip> flips = byCreator.get(creator);
+        return flips == null ? 0 : flips.size();
+    }
+
+    public Collection<CoinFlipManager.CoinFlip> byCurrency(String currencyKey) {
+        return view(byCurrency.get(currencyKey));
+    }
+
+    public Collection<CoinFlipManager.CoinFlip> byAmount(int amount) {
+        return view(byAmount.get(amount));
+    }
+
+    // Montants compris entre min et max inclus, par ordre croissant
+    public NavigableMap<Integer, Set<CoinFlipManager.CoinFlip>> amountRange(int min, int max) {
+        return Collections.unmodifiableNavigableMap(byAmount.subMap(min, true, max, true));
+    }
+
+    /**
+     * Plus ancien flip encore ouvert de cette devise et de ce montant accepté par {@code eligible}
+     * (null si aucun). La réservation reste à faire par l'appelant, qui peut la perdre.
+     */
+    public CoinFlipManager.CoinFlip oldestMatch(String currencyKey, int amount, Predicate<CoinFlipManager.CoinFlip> eligible) {
+        NavigableSet<CoinFlipManager.CoinFlip> flips = byMatch.get(new MatchKey(currencyKey, amount));
+        if (flips == null) return null;
+
+        for (CoinFlipManager.CoinFlip flip : flips) {
+            if (flip.isOpen() && eligible.test(flip)) {
+                return flip;
+            }
+        }
+        return null;
+    }
+
+    public static Comparator<CoinFlipManager.CoinFlip> comparator(Sort sort) {
+        return switch (sort) {
+            case AMOUNT_ASC -> BY_AMOUNT;
+            case AMOUNT_DESC -> BY_AMOUNT.reversed();
+            case NEWEST -> BY_NEWEST;
+            case EXPIRING_SOON -> BY_EXPIRY;
+        };
+    }
+
+    /**
+     * Vue triée des flips, éventuellement restreinte à une devise (null = toutes).
+     */
+    public NavigableSet<CoinFlipManager.CoinFlip> sorted(Sort sort, String currencyKey) {
+        OrderedIndex index = currencyKey == null ? ordered : orderedByCurrency.get(currencyKey);
+        if (index == null) {
+            return Collections.emptyNavigableSet();
+        }
+        return Collections.unmodifiableNavigableSet(index.sorted(sort));
+    }
+
+    /**
+     * Page de flips encore joignables, strictement après {@code after} dans l'ordre demandé
+     * (null = depuis le début). Requête de plage sur l'index : O(log n + limit).
+     */
+    public List<CoinFlipManager.CoinFlip> page(Sort sort, String currencyKey, CoinFlipManager.CoinFlip after, int limit) {
+        NavigableSet<CoinFlipManager.CoinFlip> sorted = sorted(sort, currencyKey);
+        Iterable<CoinFlipManager.CoinFlip> range = after == null ? sorted : sorted.tailSet(after, false);
+
+        List<CoinFlipManager.CoinFlip> page = new ArrayList<>(Math.min(limit, 64));
+        for (CoinFlipManager.CoinFlip flip : range) {
+            if (page.size() >= limit) break;
+            if (flip.isOpen()) {
+                page.add(flip);
+            }
+        }
+        return page;
+    }
+
+    public void clear() {
+        for (CoinFlipManager.CoinFlip flip : byId.values()) {
+            remove(flip);
+        }
+    }
+
+    private static <K> void index(ConcurrentMap<K, Set<CoinFlipManager.CoinFlip>> index, K key, CoinFlipManager.CoinFlip flip) {
+        index.compute(key, (k, flips) -> {
+            if (flips == null) {
+                flips = ConcurrentHashMap.newKeySet();
+            }
+            flips.add(flip);
+            return flips;
+        });
+    }
+
+    // Les ensembles vides sont retirés dans le même compute pour ne pas perdre un ajout concurrent
+    private static <K> void unindex(ConcurrentMap<K, Set<CoinFlipManager.CoinFlip>> index, K key, CoinFlipManager.CoinFlip flip) {
+        index.computeIfPresent(key, (k, flips) -> {
+            flips.remove(flip);
+            return flips.isEmpty() ? null : flips;
+        });
+    }
+
+    private static Collection<CoinFlipManager.CoinFlip> view(Set<CoinFlipManager.CoinFlip> flips) {
+        return flips == null ? Collections.emptySet() : Collections.unmodifiableSet(flips);
+    }
+}
@@ -0,0 +1,144 @@
+package com.floye.coinflip;
+
+import com.floye.coinflip.CoinFlipMessages.Args;
+import com.floye.coinflip.CoinFlipMessages.MessageKey;
+import com.floye.coinflip.CoinFlipMessages.Placeholder;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.Text;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Annonces de création de CoinFlips. Les créations sont mises en file depuis n'importe quel
+ * thread et diffusées une fois par fenêtre : quelques messages individuels, ou un résumé par
+ * devise au-delà du seuil. Le nombre de messages par joueur et par fenêtre reste donc borné,
+ * même sous spam. Les joueurs peuvent couper les annonces ; ce choix est sauvegardé.
+ */
+public class CoinFlipBroadcaster implements CoinFlipPersistence.Store {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private record Announcement(String playerName, int amount, String currency) {
+    }
+
+    private final Path mutedPath;
+    private final Queue<Announcement> pending = new ConcurrentLinkedQueue<>();
+    private final Set<UUID> muted = ConcurrentHashMap.newKeySet();
+    private volatile boolean dirty = false;
+    private int ticksUntilFlush = 0; // Thread serveur uniquement
+
+    public CoinFlipBroadcaster(Path mutedPath) {
+        this.mutedPath = mutedPath;
+    }
+
+    public void announce(String creatorName, CoinFlipManager.CoinFlip flip) {
+        pending.add(new Announcement(creatorName, flip.amount, flip.currency));
+    }
+
+    /**
+     * @return true si les annonces sont maintenant coupées pour ce joueur
+     */
+    public boolean toggleMuted(UUID playerId) {
+        boolean nowMuted = muted.add(playerId);
+        if (!nowMuted) {
+            muted.remove(playerId);
+        }
+        dirty = true;
+        return nowMuted;
+    }
+
+    public boolean isMuted(UUID playerId) {
+        return muted.contains(playerId);
+    }
+
+    public void tick(MinecraftServer server) {
+        if (--ticksUntilFlush > 0) return;
+        ticksUntilFlush = Math.max(1, CoinFlipMod.config.broadcastWindowTicks);
+        if (pending.isEmpty()) return;
+
+        List<Announcement> batch = new ArrayList<>();
+        Announcement announcement;
+        while ((announcement = pending.poll()) != null) {
+            batch.add(announcement);
+        }
+
+        List<Text> messages = batch.size() <= CoinFlipMod.config.broadcastDigestThreshold
+                ? individual(batch)
+                : digest(batch);
+
+        // Textes construits une fois, partagés par tous les destinataires
+        if (server == null) return;
+        for (ServerPlayerEntity player : server.getPlayerManager().getPlayerList()) {
+            if (muted.contains(player.getUuid())) continue;
+            for (Text message : messages) {
+                player.sendMessage(message);
+            }
+        }
+    }
+
+    private static List<Text> individual(List<Announcement> batch) {
+        List<Text> messages = new ArrayList<>(batch.size());
+        for (Announcement announcement : batch) {
+            messages.add(CoinFlipMod.config.getText(MessageKey.BROADCAST_FLIP_CREATION,
+                    Args.of(Placeholder.PLAYER, announcement.playerName())
+                            .with(Placeholder.AMOUNT, String.format("%.2f", (double) announcement.amount()))
+                            .with(Placeholder.CURRENCY, CoinFlipMod.config.getCurrencyAliasFromKey(announcement.currency()))));
+        }
+        return messages;
+    }
+
+    // Un résumé par devise : « N nouveaux CoinFlips pour un total de X »
+    private static List<Text> digest(List<Announcement> batch) {
+        Map<String, long[]> byCurrency = new LinkedHashMap<>();
+        for (Announcement announcement : batch) {
+            long[] totals = byCurrency.computeIfAbsent(announcement.currency(), key -> new long[2]);
+            totals[0]++;
+            totals[1] += announcement.amount();
+        }
+
+        List<Text> messages = new ArrayList<>(byCurrency.size());
+        for (Map.Entry<String, long[]> entry : byCurrency.entrySet()) {
+            long[] totals = entry.getValue();
+            messages.add(CoinFlipMod.config.getText(MessageKey.BROADCAST_FLIP_DIGEST,
+                    Args.of(Placeholder.COUNT, String.valueOf(totals[0]))
+                            .with(Placeholder.AMOUNT, String.format("%.2f", (double) totals[1]))
+                            .with(Placeholder.CURRENCY, CoinFlipMod.config.getCurrencyAliasFromKey(entry.getKey()))));
+        }
+        return messages;
+    }
+
+    public void load() throws IOException {
+        if (!Files.exists(mutedPath)) return;
+
+        try {
+            List<UUID> saved = GSON.fromJson(Files.readString(mutedPath, StandardCharsets.UTF_8), new TypeToken<List<UUID>>() {}.getType());
+            if (saved != null) {
+                saved.stream().filter(Objects::nonNull).forEach(muted::add);
+            }
+        } catch (JsonParseException e) {
+            CoinFlipMod.LOGGER.error("Liste des annonces coupées illisible, ignorée : {}", mutedPath, e);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        if (!dirty) return;
+        dirty = false;
+        try {
+            CoinFlipPersistence.writeAtomically(mutedPath, GSON.toJson(new ArrayList<>(muted)));
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        }
+    }
+}
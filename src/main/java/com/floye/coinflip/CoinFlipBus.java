@@ -0,0 +1,33 @@
+package com.floye.coinflip;
+
+import java.util.function.Consumer;
+
+/**
+ * Transport des messages de réplication entre serveurs. Une implémentation doit livrer les
+ * messages d'un même nœud dans l'ordre de publication, et ne jamais renvoyer à un nœud ses
+ * propres messages. La livraison peut se faire sur n'importe quel thread.
+ */
+public interface CoinFlipBus {
+    void start(Consumer<CoinFlipReplication.Message> listener);
+
+    // Non bloquant, appelable depuis n'importe quel thread
+    void publish(CoinFlipReplication.Message message);
+
+    // Idempotent
+    void close();
+
+    // Serveur seul : aucun message ne sort ni n'arrive
+    CoinFlipBus NONE = new CoinFlipBus() {
+        @Override
+        public void start(Consumer<CoinFlipReplication.Message> listener) {
+        }
+
+        @Override
+        public void publish(CoinFlipReplication.Message message) {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+}
@@ -1,6 +1,7 @@
 // CoinFlipCommands.java avec messages configurés
 package com.floye.coinflip;
 
+import com.mojang.authlib.GameProfile;
 import com.mojang.brigadier.Command;
 import com.mojang.brigadier.CommandDispatcher;
 import com.mojang.brigadier.arguments.IntegerArgumentType;
@@ -8,16 +9,28 @@ import com.mojang.brigadier.arguments.StringArgumentType;
 import com.mojang.brigadier.context.CommandContext;
 import com.mojang.brigadier.suggestion.Suggestions;
 import com.mojang.brigadier.suggestion.SuggestionsBuilder;
+import com.floye.coinflip.CoinFlipMessages.Args;
+import com.floye.coinflip.CoinFlipMessages.MessageKey;
+import com.floye.coinflip.CoinFlipMessages.Placeholder;
 import com.floye.coinflip.utils.EconomyHandler;
 import net.minecraft.command.CommandRegistryAccess;
+import net.minecraft.command.CommandSource;
+import net.minecraft.command.argument.UuidArgumentType;
 import net.minecraft.server.command.CommandManager;
 import net.minecraft.server.command.ServerCommandSource;
 import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.MutableText;
 import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 
-import java.util.Map;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 public class CoinFlipCommands {
     public static void register(CommandDispatcher<ServerCommandSource> dispatcher) {
@@ -36,10 +49,71 @@ public class CoinFlipCommands {
                                 )
                         )
                 )
+                .then(CommandManager.literal("queue")
+                        .then(CommandManager.argument("amount", IntegerArgumentType.integer(1))
+                                .executes(context -> queueFlip(context, IntegerArgumentType.getInteger(context, "amount"), "dollars"))
+                                .then(CommandManager.argument("currency", StringArgumentType.word())
+                                        .suggests((context, builder) -> suggestAllowedCurrencies(builder))
+                                        .executes(context -> queueFlip(
+                                                context,
+                                                IntegerArgumentType.getInteger(context, "amount"),
+                                                StringArgumentType.getString(context, "currency")
+                                        ))
+                                )
+                        )
+                )
                 .then(CommandManager.literal("cancel")
                         .executes(CoinFlipCommands::cancelFlip))
                 .then(CommandManager.literal("currencies")
                         .executes(CoinFlipCommands::listCurrencies))
+                .then(CommandManager.literal("broadcasts")
+                        .executes(CoinFlipCommands::toggleBroadcasts))
+                .then(CommandManager.literal("history")
+                        .executes(context -> showHistory(context, null, 1))
+                        .then(CommandManager.argument("player", StringArgumentType.word())
+                                .suggests((context, builder) -> CommandSource.suggestMatching(
+                                        context.getSource().getServer().getPlayerNames(), builder))
+                                .executes(context -> showHistory(context, StringArgumentType.getString(context, "player"), 1))
+                                .then(CommandManager.argument("page", IntegerArgumentType.integer(1))
+                                        .executes(context -> showHistory(
+                                                context,
+                                                StringArgumentType.getString(context, "player"),
+                                                IntegerArgumentType.getInteger(context, "page")
+                                        ))
+                                )
+                        )
+                )
+                .then(CommandManager.literal("top")
+                        .executes(context -> showTop(context, "wins", CoinFlipMod.config.defaultCurrencyAlias))
+                        .then(CommandManager.argument("metric", StringArgumentType.word())
+                                .suggests((context, builder) -> CommandSource.suggestMatching(
+                                        List.of("wins", "profit", "volume"), builder))
+                                .executes(context -> showTop(context, StringArgumentType.getString(context, "metric"),
+                                        CoinFlipMod.config.defaultCurrencyAlias))
+                                .then(CommandManager.argument("currency", StringArgumentType.word())
+                                        .suggests((context, builder) -> suggestAllowedCurrencies(builder))
+                                        .executes(context -> showTop(
+                                                context,
+                                                StringArgumentType.getString(context, "metric"),
+                                                StringArgumentType.getString(context, "currency")
+                                        ))
+                                )
+                        )
+                )
+                .then(CommandManager.literal("verify")
+                        .executes(CoinFlipCommands::showCommitment)
+                        .then(CommandManager.argument("id", UuidArgumentType.uuid())
+                                .executes(context -> verifyFlip(context, UuidArgumentType.getUuid(context, "id")))
+                        )
+                )
+                .then(CommandManager.literal("stats")
+                        .requires(source -> source.hasPermissionLevel(2))
+                        .executes(CoinFlipCommands::showStats)
+                )
+                .then(CommandManager.literal("export")
+                        .requires(source -> source.hasPermissionLevel(2))
+                        .executes(CoinFlipCommands::exportFlips)
+                )
                 .then(CommandManager.literal("reloadconfig")
                         .requires(source -> source.hasPermissionLevel(2))
                         .executes(CoinFlipCommands::reloadConfig)
@@ -59,43 +133,62 @@ public class CoinFlipCommands {
         return builder.buildFuture();
     }
 
-    private static int createFlip(CommandContext<ServerCommandSource> context, int amount, String currencyAlias) {
-        ServerPlayerEntity player = context.getSource().getPlayer();
-        if (player == null) return 0;
-
+    // Clé complète de la devise, ou null après avoir prévenu le joueur
+    private static String resolveCurrency(ServerPlayerEntity player, String currencyAlias) {
         if (!CoinFlipMod.config.isValidCurrencyAlias(currencyAlias)) {
             String allowedCurrencies = String.join(", ", CoinFlipMod.config.getAvailableCurrencyAliases());
-            String message = CoinFlipMod.config.getMessage("invalidCurrency", Map.of(
-                    "currency", currencyAlias,
-                    "allowed_currencies", allowedCurrencies
-            ));
-            player.sendMessage(Text.literal(message));
-            return 0;
+            player.sendMessage(CoinFlipMod.config.getText(MessageKey.INVALID_CURRENCY,
+                    Args.of(Placeholder.CURRENCY, currencyAlias)
+                            .with(Placeholder.ALLOWED_CURRENCIES, allowedCurrencies)));
+            return null;
         }
 
         String fullCurrencyKey = CoinFlipMod.config.getFullCurrencyKey(currencyAlias);
 
         if (!EconomyHandler.isCurrencyValid(fullCurrencyKey)) {
-            String message = CoinFlipMod.config.getMessage("currencyNotExist", Map.of(
-                    "currency", currencyAlias
-            ));
-            player.sendMessage(Text.literal(message));
-            return 0;
+            player.sendMessage(CoinFlipMod.config.getText(MessageKey.CURRENCY_NOT_EXIST,
+                    Args.of(Placeholder.CURRENCY, currencyAlias)));
+            return null;
         }
+        return fullCurrencyKey;
+    }
+
+    private static int createFlip(CommandContext<ServerCommandSource> context, int amount, String currencyAlias) {
+        ServerPlayerEntity player = context.getSource().getPlayer();
+        if (player == null) return 0;
+
+        String fullCurrencyKey = resolveCurrency(player, currencyAlias);
+        if (fullCurrencyKey == null) return 0;
 
         int max = CoinFlipMod.config.maxCoinFlipsPerPlayer;
 
         CompletableFuture<Boolean> future = CoinFlipMod.coinFlipManager.createFlip(player, amount, fullCurrencyKey);
         future.thenAccept(success -> {
-            String msgKey = success ? "createSuccess" : "createFail";
+            MessageKey msgKey = success ? MessageKey.CREATE_SUCCESS : MessageKey.CREATE_FAIL;
             double taxPercent = CoinFlipMod.config.getTaxPercentageForCurrency(currencyAlias);
-            String message = CoinFlipMod.config.getMessage(msgKey, Map.of(
-                    "amount", String.valueOf(amount),
-                    "currency", currencyAlias,
-                    "max", String.valueOf(max),
-                    "tax", String.format("%.2f", taxPercent)
-            ));
-            player.sendMessage(Text.literal(message));
+            player.sendMessage(CoinFlipMod.config.getText(msgKey, Args.of(Placeholder.AMOUNT, String.valueOf(amount))
+                    .with(Placeholder.CURRENCY, currencyAlias)
+                    .with(Placeholder.MAX, String.valueOf(max))
+                    .with(Placeholder.TAX, String.format("%.2f", taxPercent))));
+        });
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int queueFlip(CommandContext<ServerCommandSource> context, int amount, String currencyAlias) {
+        ServerPlayerEntity player = context.getSource().getPlayer();
+        if (player == null) return 0;
+
+        String fullCurrencyKey = resolveCurrency(player, currencyAlias);
+        if (fullCurrencyKey == null) return 0;
+
+        CoinFlipMod.coinFlipManager.queueFlip(player, amount, fullCurrencyKey).thenAccept(result -> {
+            MessageKey msgKey = switch (result) {
+                case MATCHED -> MessageKey.QUEUE_MATCHED;
+                case WAITING -> MessageKey.QUEUE_WAITING;
+                case FAILED -> MessageKey.CREATE_FAIL;
+            };
+            player.sendMessage(CoinFlipMod.config.getText(msgKey, Args.of(Placeholder.AMOUNT, String.valueOf(amount))
+                    .with(Placeholder.CURRENCY, currencyAlias)));
         });
         return Command.SINGLE_SUCCESS;
     }
@@ -106,19 +199,25 @@ public class CoinFlipCommands {
 
         CoinFlipMod.coinFlipManager.cancelFlip(player).thenAccept(result -> { // result est maintenant un CancelFlipResult
             if (result.success) { // Utilisation de result.success
-                String message = CoinFlipMod.config.getMessage("cancelSuccess", Map.of(
-                        "amount", String.valueOf(result.amount), // Utilisation de result.amount
-                        "currency", result.currencyAlias // Utilisation de result.currencyAlias
-                ));
-                player.sendMessage(Text.literal(message));
+                player.sendMessage(CoinFlipMod.config.getText(MessageKey.CANCEL_SUCCESS,
+                        Args.of(Placeholder.AMOUNT, String.valueOf(result.amount)) // Utilisation de result.amount
+                                .with(Placeholder.CURRENCY, result.currencyAlias))); // Utilisation de result.currencyAlias
             } else {
-                String message = CoinFlipMod.config.getMessage("cancelFail", Map.of());
-                player.sendMessage(Text.literal(message));
+                player.sendMessage(CoinFlipMod.config.getText(MessageKey.CANCEL_FAIL));
             }
         });
         return Command.SINGLE_SUCCESS;
     }
 
+    private static int toggleBroadcasts(CommandContext<ServerCommandSource> context) {
+        ServerPlayerEntity player = context.getSource().getPlayer();
+        if (player == null) return 0;
+
+        boolean muted = CoinFlipMod.coinFlipManager.getBroadcaster().toggleMuted(player.getUuid());
+        player.sendMessage(CoinFlipMod.config.getText(muted ? MessageKey.BROADCASTS_MUTED : MessageKey.BROADCASTS_UNMUTED));
+        return Command.SINGLE_SUCCESS;
+    }
+
     private static int openGui(CommandContext<ServerCommandSource> context) {
         ServerPlayerEntity player = context.getSource().getPlayer();
         if (player != null) {
@@ -127,10 +226,174 @@ public class CoinFlipCommands {
         return Command.SINGLE_SUCCESS;
     }
 
+    private static int showCommitment(CommandContext<ServerCommandSource> context) {
+        CoinFlipFairness fairness = CoinFlipMod.coinFlipManager.getFairness();
+        Text message = CoinFlipMod.config.getText(MessageKey.VERIFY_COMMITMENT,
+                Args.of(Placeholder.COMMITMENT, fairness.commitment())
+                        .with(Placeholder.COUNT, String.valueOf(fairness.nextIndex())));
+        context.getSource().sendFeedback(() -> message, false);
+        return Command.SINGLE_SUCCESS;
+    }
+
+    // Recherche éventuellement dans coinflip_draws.jsonl : hors du thread serveur
+    private static int verifyFlip(CommandContext<ServerCommandSource> context, UUID flipId) {
+        ServerCommandSource source = context.getSource();
+        CompletableFuture.supplyAsync(() -> {
+            try {
+                return CoinFlipMod.coinFlipManager.getFairness().verify(flipId);
+            } catch (IOException e) {
+                throw new CompletionException(e);
+            }
+        }).whenComplete((result, error) -> source.getServer().execute(() -> {
+            if (error != null) {
+                CoinFlipMod.LOGGER.error("Erreur lors de la vérification du flip {}", flipId, error);
+                source.sendError(CoinFlipMod.config.getText(MessageKey.VERIFY_ERROR, Args.of(Placeholder.ID, flipId.toString())
+                        .with(Placeholder.ERROR, String.valueOf(error.getMessage()))));
+                return;
+            }
+            sendVerification(source, flipId, result);
+        }));
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static void sendVerification(ServerCommandSource source, UUID flipId, Optional<CoinFlipFairness.Verification> result) {
+        String id = flipId.toString();
+        if (result.isEmpty()) {
+            source.sendFeedback(() -> CoinFlipMod.config.getText(MessageKey.VERIFY_NOT_FOUND, Args.of(Placeholder.ID, id)), false);
+            return;
+        }
+
+        CoinFlipFairness.Verification verification = result.get();
+        CoinFlipFairness.Draw draw = verification.draw();
+        UUID winner = draw.creatorWins ? draw.creator : draw.participant;
+        String winnerName = source.getServer().getUserCache() == null ? winner.toString()
+                : source.getServer().getUserCache().getByUuid(winner).map(profile -> profile.getName()).orElse(winner.toString());
+
+        Text details = CoinFlipMod.config.getText(MessageKey.VERIFY_RESULT, Args.of(Placeholder.ID, id)
+                .with(Placeholder.COUNT, String.valueOf(draw.index))
+                .with(Placeholder.SEED, draw.seed)
+                .with(Placeholder.PLAYER, winnerName));
+        source.sendFeedback(() -> details, false);
+
+        boolean valid = verification.outcomeMatches() && verification.chainMatches();
+        Text status = CoinFlipMod.config.getText(valid ? MessageKey.VERIFY_VALID : MessageKey.VERIFY_INVALID,
+                Args.of(Placeholder.ID, id)
+                        .with(Placeholder.COMMITMENT, draw.commitment)
+                        .with(Placeholder.OUTCOME, String.valueOf(verification.outcomeMatches()))
+                        .with(Placeholder.CHAIN, String.valueOf(verification.chainMatches())));
+        source.sendFeedback(() -> status, false);
+    }
+
+    private static int showHistory(CommandContext<ServerCommandSource> context, String playerName, int page) {
+        ServerCommandSource source = context.getSource();
+        UUID target;
+        String targetName;
+        if (playerName == null) {
+            ServerPlayerEntity player = source.getPlayer();
+            if (player == null) return 0;
+            target = player.getUuid();
+            targetName = player.getName().getString();
+        } else {
+            ServerPlayerEntity online = source.getServer().getPlayerManager().getPlayer(playerName);
+            Optional<GameProfile> profile = online != null ? Optional.of(online.getGameProfile())
+                    : source.getServer().getUserCache() == null ? Optional.empty()
+                    : source.getServer().getUserCache().findByName(playerName);
+            if (profile.isEmpty()) {
+                source.sendError(CoinFlipMod.config.getText(MessageKey.PLAYER_NOT_FOUND));
+                return 0;
+            }
+            target = profile.get().getId();
+            targetName = profile.get().getName();
+        }
+
+        CoinFlipHistory history = CoinFlipMod.coinFlipManager.getHistory();
+        int pageSize = Math.max(1, CoinFlipMod.config.historyPageSize);
+        int pages = (history.count(target) + pageSize - 1) / pageSize;
+        if (pages == 0) {
+            source.sendFeedback(() -> CoinFlipMod.config.getText(MessageKey.HISTORY_EMPTY, Args.of(Placeholder.PLAYER, targetName)), false);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        int shownPage = Math.min(page, pages);
+        source.sendFeedback(() -> CoinFlipMod.config.getText(MessageKey.HISTORY_HEADER, Args.of(Placeholder.PLAYER, targetName)
+                .with(Placeholder.PAGE, String.valueOf(shownPage))
+                .with(Placeholder.COUNT, String.valueOf(pages))), false);
+        for (CoinFlipHistory.Entry entry : history.page(target, shownPage - 1, pageSize)) {
+            Text line = CoinFlipHistoryGui.entryText(source.getServer(), entry, target);
+            source.sendFeedback(() -> line, false);
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int showTop(CommandContext<ServerCommandSource> context, String metricName, String currencyAlias) {
+        ServerCommandSource source = context.getSource();
+        CoinFlipLeaderboards.Metric metric = CoinFlipLeaderboards.Metric.byName(metricName);
+        if (metric == null) {
+            source.sendError(CoinFlipMod.config.getText(MessageKey.INVALID_METRIC, Args.of(Placeholder.METRIC, metricName)));
+            return 0;
+        }
+        // Les classements couvrent aussi les devises retirées de l'économie : seul l'alias est vérifié
+        if (!CoinFlipMod.config.isValidCurrencyAlias(currencyAlias)) {
+            source.sendError(CoinFlipMod.config.getText(MessageKey.INVALID_CURRENCY, Args.of(Placeholder.CURRENCY, currencyAlias)
+                    .with(Placeholder.ALLOWED_CURRENCIES, String.join(", ", CoinFlipMod.config.getAvailableCurrencyAliases()))));
+            return 0;
+        }
+
+        List<CoinFlipLeaderboards.PlayerStats> top = CoinFlipMod.coinFlipManager.getLeaderboards()
+                .top(metric, CoinFlipMod.config.getFullCurrencyKey(currencyAlias), CoinFlipMod.config.leaderboardSize);
+        if (top.isEmpty()) {
+            source.sendFeedback(() -> CoinFlipMod.config.getText(MessageKey.TOP_EMPTY, Args.of(Placeholder.CURRENCY, currencyAlias)), false);
+            return Command.SINGLE_SUCCESS;
+        }
+
+        String metricLabel = metric.name().toLowerCase(Locale.ROOT);
+        source.sendFeedback(() -> CoinFlipMod.config.getText(MessageKey.TOP_HEADER, Args.of(Placeholder.METRIC, metricLabel)
+                .with(Placeholder.CURRENCY, currencyAlias)), false);
+        for (int i = 0; i < top.size(); i++) {
+            CoinFlipLeaderboards.PlayerStats stats = top.get(i);
+            String value = switch (metric) {
+                case WINS -> String.valueOf(stats.wins());
+                case PROFIT -> String.format("%.2f", stats.profit());
+                case VOLUME -> String.valueOf(stats.volume());
+            };
+            Text line = CoinFlipMod.config.getText(MessageKey.TOP_ENTRY, Args.of(Placeholder.RANK, String.valueOf(i + 1))
+                    .with(Placeholder.PLAYER, CoinFlipHistoryGui.nameOf(source.getServer(), stats.player()))
+                    .with(Placeholder.VALUE, value)
+                    .with(Placeholder.CURRENCY, currencyAlias));
+            source.sendFeedback(() -> line, false);
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int showStats(CommandContext<ServerCommandSource> context) {
+        context.getSource().sendFeedback(() -> CoinFlipMod.config.getText(MessageKey.METRICS_HEADER), false);
+        for (String line : CoinFlipMod.metrics.report()) {
+            Text message = CoinFlipMod.config.getText(MessageKey.METRICS_LINE, Args.of(Placeholder.VALUE, line));
+            context.getSource().sendFeedback(() -> message, false);
+        }
+        return Command.SINGLE_SUCCESS;
+    }
+
+    private static int exportFlips(CommandContext<ServerCommandSource> context) {
+        try {
+            Path path = CoinFlipMod.coinFlipManager.exportFlips();
+            context.getSource().sendFeedback(() -> CoinFlipMod.config.getText(MessageKey.EXPORT_SUCCESS,
+                    Args.of(Placeholder.FILE, path.getFileName().toString())), true);
+            return Command.SINGLE_SUCCESS;
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.error("Erreur lors de l'export des CoinFlips", e);
+            context.getSource().sendError(CoinFlipMod.config.getText(MessageKey.EXPORT_FAIL,
+                    Args.of(Placeholder.ERROR, String.valueOf(e.getMessage()))));
+            return 0;
+        }
+    }
+
     private static int reloadConfig(CommandContext<ServerCommandSource> context) {
         CoinFlipMod.config = CoinFlipConfig.load();
-        String message = CoinFlipMod.config.getMessage("configReloaded", Map.of());
-        context.getSource().sendFeedback(() -> Text.literal(message), true);
+        CoinFlipGui.invalidateAll();
+        EconomyHandler.accounts().clear();
+        Text message = CoinFlipMod.config.getText(MessageKey.CONFIG_RELOADED);
+        context.getSource().sendFeedback(() -> message, true);
         return Command.SINGLE_SUCCESS;
     }
 
@@ -138,22 +401,21 @@ public class CoinFlipCommands {
         ServerPlayerEntity player = context.getSource().getPlayer();
         if (player == null) return 0;
 
-        String title = CoinFlipMod.config.getMessage("availableCurrenciesTitle", Map.of());
-        player.sendMessage(Text.literal(title).formatted(Formatting.GOLD));
+        player.sendMessage(CoinFlipMod.config.getText(MessageKey.AVAILABLE_CURRENCIES_TITLE).formatted(Formatting.GOLD));
 
         for (String alias : CoinFlipMod.config.getAvailableCurrencyAliases()) {
             boolean isPrimary = alias.equals(CoinFlipMod.config.defaultCurrencyAlias);
             String fullKey = CoinFlipMod.config.getFullCurrencyKey(alias);
             boolean exists = EconomyHandler.isCurrencyValid(fullKey);
 
-            String currencyMessage = CoinFlipMod.config.getMessage(isPrimary ?
-                            "primaryCurrencyFormat" : "currencyFormat",
-                    Map.of("alias", alias, "exists", exists ? "✓" : "✗")
+            MutableText currencyMessage = CoinFlipMod.config.getText(isPrimary ?
+                            MessageKey.PRIMARY_CURRENCY_FORMAT : MessageKey.CURRENCY_FORMAT,
+                    Args.of(Placeholder.ALIAS, alias).with(Placeholder.EXISTS, exists ? "✓" : "✗")
             );
 
             Text message = Text.literal("• ")
                     .formatted(Formatting.YELLOW)
-                    .append(Text.literal(currencyMessage)
+                    .append(currencyMessage
                             .formatted(isPrimary ? Formatting.GREEN : exists ? Formatting.WHITE : Formatting.RED));
 
             player.sendMessage(message);
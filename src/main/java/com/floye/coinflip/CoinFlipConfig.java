@@ -1,8 +1,10 @@
 package com.floye.coinflip;
 
+import com.floye.coinflip.utils.CurrencyRegistry;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
 import net.fabricmc.loader.api.FabricLoader;
+import net.minecraft.text.MutableText;
 import net.minecraft.util.Formatting;
 
 import java.io.IOException;
@@ -15,7 +17,7 @@ import net.minecraft.util.Identifier;
 
 public class CoinFlipConfig {
     private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
-    private static final Path CONFIG_DIR = FabricLoader.getInstance().getConfigDir().resolve("coinflip");
+    private static final Path CONFIG_DIR = dataDir();
     private static final Path CONFIG_PATH = CONFIG_DIR.resolve("setting.json");
 
     // Paramètres généraux
@@ -29,8 +31,53 @@ public class CoinFlipConfig {
     public double getTaxPercentageForCurrency(String currency) {
         return currencyTaxes.getOrDefault(currency, (double) taxPercentage); // taxPercentage est la tax générale par défaut
     }
+    public boolean isJsonSnapshot() {
+        return "json".equalsIgnoreCase(snapshotFormat);
+    }
+    public double getTaxPercentageForKey(String fullKey) {
+        return currencyRegistry.taxForKey(fullKey);
+    }
     public int flipTimeoutMinutes = 5;
 
+    // Persistance : nombre d'événements journalisés avant réécriture du snapshot
+    public int journalCompactionThreshold = 500;
+    // Délai minimal entre deux écritures disque (les événements sont regroupés)
+    public long saveIntervalMillis = 1000;
+    // Format du snapshot : "binary" (compact, par défaut) ou "json" (ancien format lisible)
+    public String snapshotFormat = "binary";
+
+    // Annonces : fenêtre de regroupement en ticks, et nombre d'annonces au-delà duquel on envoie un résumé
+    public int broadcastWindowTicks = 40;
+    public int broadcastDigestThreshold = 3;
+
+    // Dump des métriques dans les logs, en minutes (0 = désactivé)
+    public int metricsLogIntervalMinutes = 15;
+
+    // Cache des comptes Impactor : durée d'inactivité avant éviction et nombre max de joueurs gardés
+    public int accountCacheTtlMinutes = 30;
+    public int accountCacheMaxPlayers = 500;
+
+    // Ledger local des mises : seules les différences nettes sont écrites dans Impactor, par lots
+    public boolean escrowLedger = false;
+    public int escrowWriteBackSeconds = 60;
+
+    // Réplication du carnet entre serveurs (lu au démarrage) : "none" ou "directory" (dossier partagé)
+    public String replicationTransport = "none";
+    public String replicationDirectory = "";
+    public String replicationNodeId = ""; // Unique et stable par serveur ; vide = tiré une fois et gardé dans coinflip_node_id
+    public long replicationPollMillis = 100;
+
+    // Tirage vérifiable : nombre de graines par chaîne de hachage (une par flip)
+    public int fairnessChainLength = 10_000;
+
+    // Historique : enregistrements par segment (80 octets chacun) et âge max d'un segment avant rotation
+    public int historySegmentRecords = 65_536;
+    public int historySegmentMaxAgeHours = 24;
+    public int historyPageSize = 10;
+
+    // Classements : nombre de joueurs affichés par /coinflip top
+    public int leaderboardSize = 10;
+
     // Configuration des devises
     public Map<String, String> currencyAliases = new HashMap<>() {{
         put("dollars", "impactor:dollars");
@@ -47,11 +94,21 @@ public class CoinFlipConfig {
         // Titles
         public String mainTitle = "Available CoinFlips";
         public String animationTitle = "CoinFlip Result";
+        public String historyTitle = "CoinFlip History";
 
         // Buttons and UI elements
         public String nextPageButton = "Next Page →";
         public String prevPageButton = "← Previous Page";
         public String backButton = "Back";
+        public String sortButton = "Sort: %sort%";
+        public String currencyFilterButton = "Currency: %currency%";
+        public String historyButton = "History";
+        public String statsTitle = "Statistics";
+        public String allCurrencies = "All";
+        public String sortAmountAscending = "Amount ↑";
+        public String sortAmountDescending = "Amount ↓";
+        public String sortNewest = "Newest";
+        public String sortExpiringSoon = "Expiring soon";
 
         // Display formats
         public String flipEntryFormat = "%player% - %amount% %currency%";
@@ -66,6 +123,10 @@ public class CoinFlipConfig {
         public boolean showPlayerHeads = true;
         public int itemsPerPage = 50;
 
+        // Animation : ticks entre deux images, et nombre d'images avant le résultat
+        public int animationFrameTicks = 4;
+        public int animationFrames = 20;
+
         // Sons
         public String flipSound = "minecraft:block.note_block.pling";
         public float flipSoundVolume = 0.5f;
@@ -106,6 +167,40 @@ public class CoinFlipConfig {
         public String currencyNotExist = "§cThe currency %currency% is configured but does not exist in the economic system";
         public String flipTimeout = "§cYour CoinFlip was canceled after %minutes% minutes without a participant";
         public String broadcastFlipCreation = "§6A new CoinFlip has been created by %player% for %amount% %currency%!";
+        public String broadcastFlipDigest = "§6%count% new CoinFlips totalling %amount% %currency%! Use /coinflip to join.";
+        public String broadcastsMuted = "§7You will no longer see CoinFlip announcements.";
+        public String broadcastsUnmuted = "§aCoinFlip announcements enabled.";
+        public String queueMatched = "§aMatched instantly with a CoinFlip of %amount% %currency%!";
+        public String fairnessReceipt = "§7Provably fair draw, check it with /coinflip verify %id%";
+        public String verifyCommitment = "§6Current commitment: §f%commitment% §7(next seed #%count%)";
+        public String verifyResult = "§6Flip %id%: seed #%count% §f%seed% §6— winner: §f%player%";
+        public String verifyValid = "§aOutcome and seed match the published commitment %commitment%.";
+        public String verifyInvalid = "§cVerification FAILED for flip %id% (outcome: %outcome%, chain: %chain%).";
+        public String verifyNotFound = "§cNo draw recorded for flip %id%.";
+        public String verifyError = "§cCould not verify flip %id%: %error%";
+        public String historyHeader = "§6=== CoinFlip history of %player% (page %page%/%count%) ===";
+        public String historyEntryWon = "§7%time% §aWon §f%amount% %currency% §7vs §f%player%";
+        public String historyEntryLost = "§7%time% §cLost §f%amount% %currency% §7vs §f%player%";
+        public String historyEmpty = "§7No CoinFlip history for %player%.";
+        public String topHeader = "§6=== CoinFlip top %metric% (%currency%) ===";
+        public String topEntry = "§e#%rank% §f%player% §7- §a%value%";
+        public String topEmpty = "§7No CoinFlip results yet in %currency%.";
+        public String invalidMetric = "§cUnknown leaderboard: %metric%. Use wins, profit or volume.";
+        public String statsEntry = "§f%currency%§7: §a%wins% won §c%losses% lost §7net §f%profit% §7volume §f%volume% §7tax §f%tax%";
+        public String metricsHeader = "§6=== CoinFlip stats ===";
+        public String metricsLine = "§7%value%";
+        public String exportSuccess = "§aOpen CoinFlips exported to %file% (rename it to coinflip_data.json to import it on the next start)";
+        public String exportFail = "§cExport failed: %error%";
+        public String queueWaiting = "§eNo matching CoinFlip yet: yours (%amount% %currency%) will be joined by the next player queuing the same amount.";
+    }
+
+    // Dossier de config et de sauvegarde ; -Dcoinflip.dataDir permet de le déplacer hors d'un serveur (benchmarks, simulation)
+    public static Path dataDir() {
+        String override = System.getProperty("coinflip.dataDir");
+        if (override != null) {
+            return Path.of(override);
+        }
+        return FabricLoader.getInstance().getConfigDir().resolve("coinflip");
     }
 
     public static CoinFlipConfig load() {
@@ -114,54 +209,43 @@ public class CoinFlipConfig {
                 Files.createDirectories(CONFIG_DIR);
             }
 
+            CoinFlipConfig config;
             if (Files.exists(CONFIG_PATH)) {
                 String json = Files.readString(CONFIG_PATH);
-                return GSON.fromJson(json, CoinFlipConfig.class);
+                config = GSON.fromJson(json, CoinFlipConfig.class);
             } else {
-                CoinFlipConfig config = new CoinFlipConfig();
+                config = new CoinFlipConfig();
                 Files.writeString(CONFIG_PATH, GSON.toJson(config));
-                return config;
             }
+            config.prepare();
+            return config;
         } catch (IOException e) {
             CoinFlipMod.LOGGER.error("Erreur lors du chargement de la configuration CoinFlip", e);
-            return new CoinFlipConfig();
+            CoinFlipConfig config = new CoinFlipConfig();
+            config.prepare();
+            return config;
         }
     }
 
-    public String getMessage(String key, Map<String, String> placeholders) {
-        String raw = switch (key) {
-            case "createSuccess" -> messages.createSuccess;
-            case "createFail" -> messages.createFail;
-            case "cancelSuccess" -> messages.cancelSuccess;
-            case "cancelFail" -> messages.cancelFail;
-            case "joinSuccess" -> messages.joinSuccess;
-            case "joinFail" -> messages.joinFail;
-            case "joinOwnFlip" -> messages.joinOwnFlip;
-            case "notEnoughMoney" -> messages.notEnoughMoney;
-            case "alreadyMaxFlips" -> messages.alreadyMaxFlips;
-            case "playerNotFound" -> messages.playerNotFound;
-            case "playerJoined" -> messages.playerJoined;
-            case "win" -> messages.win;
-            case "lose" -> messages.lose;
-            case "refundMessage" -> messages.refundMessage;
-            case "invalidCurrency" -> messages.invalidCurrency;
-            case "taxApplied" -> messages.taxApplied;
-            case "clickToJoin" -> messages.clickToJoin;
-            case "configReloaded" -> messages.configReloaded;
-            case "availableCurrenciesTitle" -> messages.availableCurrenciesTitle;
-            case "primaryCurrencyFormat" -> messages.primaryCurrencyFormat;
-            case "currencyFormat" -> messages.currencyFormat;
-            case "currencyNotExist" -> messages.currencyNotExist;
-            case "flipTimeout" -> messages.flipTimeout;
-            case "broadcastFlipCreation" -> messages.broadcastFlipCreation;
-            default -> "";
-        };
-
-        for (Map.Entry<String, String> entry : placeholders.entrySet()) {
-            raw = raw.replace("%" + entry.getKey() + "%", entry.getValue());
-        }
+    // Modèles compilés à partir des messages et table des devises ; reconstruits à chaque load()
+    private transient CoinFlipMessages compiledMessages;
+    private transient CurrencyRegistry currencyRegistry;
+
+    private void prepare() {
+        compiledMessages = new CoinFlipMessages(this);
+        currencyRegistry = new CurrencyRegistry(currencyAliases, currencyTaxes, taxPercentage);
+    }
 
-        return raw;
+    public CurrencyRegistry getCurrencyRegistry() {
+        return currencyRegistry;
+    }
+
+    public MutableText getText(CoinFlipMessages.MessageKey key) {
+        return compiledMessages.text(key);
+    }
+
+    public MutableText getText(CoinFlipMessages.MessageKey key, CoinFlipMessages.Args args) {
+        return compiledMessages.text(key, args);
     }
 
     public Formatting getColorFormatting(String colorName) {
@@ -173,24 +257,20 @@ public class CoinFlipConfig {
     }
 
     public boolean isValidCurrencyAlias(String alias) {
-        return currencyAliases.containsKey(alias);
+        return currencyRegistry.isAlias(alias);
     }
 
     public String getFullCurrencyKey(String alias) {
-        return currencyAliases.getOrDefault(alias, "impactor:dollars");
+        return currencyRegistry.keyOf(alias, "impactor:dollars");
     }
 
+    // Liste non modifiable, partagée entre appelants
     public List<String> getAvailableCurrencyAliases() {
-        return new ArrayList<>(currencyAliases.keySet());
+        return currencyRegistry.aliases();
     }
 
     public String getCurrencyAliasFromKey(String fullKey) {
-        for (Map.Entry<String, String> entry : currencyAliases.entrySet()) {
-            if (entry.getValue().equals(fullKey)) {
-                return entry.getKey();
-            }
-        }
-        return fullKey;
+        return currencyRegistry.aliasOf(fullKey);
     }
 
 
@@ -0,0 +1,269 @@
+package com.floye.coinflip;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bus de réplication sur un dossier partagé (disque local, NFS...), pour les tests et les
+ * petits réseaux sans broker. Chaque nœud écrit ses messages, une ligne JSON chacun, dans ses
+ * propres segments {@code <nœud>-<début>.jsonl} et lit ceux des autres à partir du dernier
+ * octet lu : un seul écrivain par fichier, aucun verrou entre serveurs.
+ * <p>
+ * Un segment présent au démarrage est lu depuis sa fin (l'état courant arrive par HELLO),
+ * un segment apparu ensuite depuis son début. Un nouveau segment est ouvert chaque minute
+ * et les anciens sont supprimés après quelques minutes, par leur nœud ou, s'il a disparu,
+ * par n'importe quel autre.
+ */
+public class CoinFlipDirectoryBus implements CoinFlipBus {
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final long SEGMENT_MILLIS = 60_000;
+    private static final long RETENTION_MILLIS = 5 * SEGMENT_MILLIS;
+
+    private final Path directory;
+    private final String nodeId;
+    private final long pollMillis;
+    private final Queue<CoinFlipReplication.Message> outbox = new ConcurrentLinkedQueue<>();
+    // Thread du bus uniquement
+    private final Map<Path, Long> offsets = new HashMap<>();
+    private final Deque<Path> ownSegments = new ArrayDeque<>();
+    private ScheduledExecutorService executor;
+    private Consumer<CoinFlipReplication.Message> listener;
+    private BufferedWriter writer;
+    private long segmentStart;
+
+    public CoinFlipDirectoryBus(Path directory, String nodeId, long pollMillis) {
+        this.directory = directory;
+        this.nodeId = nodeId;
+        this.pollMillis = pollMillis;
+    }
+
+    @Override
+    public synchronized void start(Consumer<CoinFlipReplication.Message> listener) {
+        if (executor != null) return;
+        this.listener = listener;
+
+        try {
+            Files.createDirectories(directory);
+            // Segments déjà là : leur contenu décrit un état passé, on ne lit que la suite.
+            // Ceux d'une vie précédente de ce nœud ne servent plus à personne.
+            for (Path segment : segments()) {
+                if (isOwn(segment)) {
+                    Files.deleteIfExists(segment);
+                } else {
+                    offsets.put(segment, Files.size(segment));
+                }
+            }
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.error("Dossier de réplication CoinFlip inaccessible : {}", directory, e);
+        }
+
+        executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "CoinFlip-Bus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.scheduleWithFixedDelay(this::poll, 0, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void publish(CoinFlipReplication.Message message) {
+        outbox.add(message);
+    }
+
+    @Override
+    public synchronized void close() {
+        if (executor == null) return;
+
+        executor.shutdown();
+        try {
+            executor.awaitTermination(2, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor = null;
+        // Derniers messages (retraits, résultats) avant l'arrêt
+        writeOutbox();
+        closeWriter();
+    }
+
+    private void poll() {
+        try {
+            writeOutbox();
+            readOthers();
+            pruneOwnSegments();
+        } catch (RuntimeException e) {
+            CoinFlipMod.LOGGER.error("Erreur du bus de réplication CoinFlip", e);
+        }
+    }
+
+    private synchronized void writeOutbox() {
+        if (outbox.isEmpty()) return;
+
+        try {
+            long now = System.currentTimeMillis();
+            if (writer == null || now - segmentStart >= SEGMENT_MILLIS) {
+                closeWriter();
+                segmentStart = now;
+                Path segment = directory.resolve(nodeId + "-" + now + ".jsonl");
+                writer = Files.newBufferedWriter(segment, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+                ownSegments.add(segment);
+            }
+
+            CoinFlipReplication.Message message;
+            while ((message = outbox.poll()) != null) {
+                writer.write(GSON.toJson(message));
+                writer.newLine();
+            }
+            writer.flush();
+        } catch (IOException e) {
+            // Les messages déjà sortis de la file sont perdus : les flips distants expirent d'eux-mêmes
+            CoinFlipMod.LOGGER.error("Écriture impossible dans le dossier de réplication CoinFlip", e);
+            closeWriter();
+        }
+    }
+
+    private void readOthers() {
+        List<Path> segments;
+        try {
+            segments = segments();
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.warn("Lecture du dossier de réplication CoinFlip impossible", e);
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        Set<Path> present = new HashSet<>();
+        for (Path segment : segments) {
+            if (isOwn(segment)) continue;
+            present.add(segment);
+            readFrom(segment, offsets.getOrDefault(segment, 0L));
+            deleteIfAbandoned(segment, now);
+        }
+        // Segments supprimés par leur nœud
+        offsets.keySet().retainAll(present);
+    }
+
+    private void readFrom(Path segment, long offset) {
+        try (RandomAccessFile file = new RandomAccessFile(segment.toFile(), "r")) {
+            long length = file.length();
+            if (length <= offset) return;
+
+            byte[] data = new byte[(int) (length - offset)];
+            file.seek(offset);
+            file.readFully(data);
+
+            // Seules les lignes complètes sont consommées : la dernière peut être en cours d'écriture
+            int start = 0;
+            for (int i = 0; i < data.length; i++) {
+                if (data[i] != '\n') continue;
+
+                String line = new String(data, start, i - start, StandardCharsets.UTF_8);
+                start = i + 1;
+                if (line.isBlank()) continue;
+                try {
+                    CoinFlipReplication.Message message = GSON.fromJson(line, CoinFlipReplication.Message.class);
+                    if (message != null && message.type != null && !nodeId.equals(message.node)) {
+                        listener.accept(message);
+                    }
+                } catch (JsonParseException e) {
+                    CoinFlipMod.LOGGER.warn("Message de réplication CoinFlip illisible ignoré : {}", line);
+                }
+            }
+            offsets.put(segment, offset + start);
+        } catch (IOException e) {
+            // Segment supprimé entre la liste et la lecture : oublié au prochain passage
+            CoinFlipMod.LOGGER.debug("Segment de réplication {} illisible", segment, e);
+        }
+    }
+
+    /**
+     * Segment d'un autre nœud fermé depuis plus que la rétention : son nœud l'aurait déjà
+     * supprimé s'il tournait encore (arrêté pour de bon, ou renommé). N'importe quel nœud
+     * peut donc le retirer une fois lu.
+     */
+    private void deleteIfAbandoned(Path segment, long now) {
+        if (now - startOf(segment) < SEGMENT_MILLIS + RETENTION_MILLIS) return;
+
+        try {
+            Long offset = offsets.get(segment);
+            if (offset != null && offset < Files.size(segment)) return;
+            Files.deleteIfExists(segment);
+            offsets.remove(segment);
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.debug("Segment de réplication abandonné {} non supprimé", segment, e);
+        }
+    }
+
+    private synchronized void pruneOwnSegments() {
+        long now = System.currentTimeMillis();
+        while (ownSegments.size() > 1) {
+            Path oldest = ownSegments.peekFirst();
+            if (now - startOf(oldest) < RETENTION_MILLIS) break;
+
+            ownSegments.pollFirst();
+            try {
+                Files.deleteIfExists(oldest);
+            } catch (IOException e) {
+                CoinFlipMod.LOGGER.warn("Suppression du segment de réplication {} impossible", oldest, e);
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> segments = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jsonl")) {
+            stream.forEach(segments::add);
+        }
+        // Par nœud puis par date de début : l'ordre de publication est conservé
+        segments.sort(Comparator.comparing((Path segment) -> nodeOf(segment)).thenComparingLong(CoinFlipDirectoryBus::startOf));
+        return segments;
+    }
+
+    private boolean isOwn(Path segment) {
+        return nodeId.equals(nodeOf(segment));
+    }
+
+    private static String nodeOf(Path segment) {
+        String name = segment.getFileName().toString();
+        int dash = name.lastIndexOf('-');
+        return dash < 0 ? name : name.substring(0, dash);
+    }
+
+    private static long startOf(Path segment) {
+        String name = segment.getFileName().toString();
+        int dash = name.lastIndexOf('-');
+        int dot = name.lastIndexOf('.');
+        try {
+            return Long.parseLong(name.substring(dash + 1, dot));
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private void closeWriter() {
+        if (writer == null) return;
+        try {
+            writer.close();
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.warn("Fermeture du segment de réplication CoinFlip impossible", e);
+        }
+        writer = null;
+    }
+}
@@ -0,0 +1,111 @@
+package com.floye.coinflip;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Roue temporelle hachée pour l'expiration des CoinFlips, avancée d'un cran par tick serveur.
+ * Insertion et annulation en O(1) ; les flips qui expirent au même tick sont rendus en un seul lot.
+ */
+public class CoinFlipExpiryWheel {
+    private static final int WHEEL_SIZE = 512; // Puissance de deux
+    private static final int MASK = WHEEL_SIZE - 1;
+
+    // Noeud de liste doublement chaînée, pour pouvoir le détacher sans parcourir son seau
+    private static final class Timeout {
+        final CoinFlipManager.CoinFlip flip;
+        final int bucket;
+        long remainingRounds;
+        Timeout prev;
+        Timeout next;
+
+        Timeout(CoinFlipManager.CoinFlip flip, int bucket, long remainingRounds) {
+            this.flip = flip;
+            this.bucket = bucket;
+            this.remainingRounds = remainingRounds;
+        }
+    }
+
+    private final Timeout[] buckets = new Timeout[WHEEL_SIZE];
+    private final Map<UUID, Timeout> timeouts = new HashMap<>();
+    private long tick = 0;
+
+    /**
+     * Programme l'expiration du flip dans {@code delayTicks} ticks (remplace une expiration existante).
+     */
+    public synchronized void schedule(CoinFlipManager.CoinFlip flip, long delayTicks) {
+        unlink(timeouts.remove(flip.id));
+
+        long delay = Math.max(1, delayTicks);
+        int bucket = (int) ((tick + delay) & MASK);
+        Timeout timeout = new Timeout(flip, bucket, (delay - 1) / WHEEL_SIZE);
+
+        timeout.next = buckets[bucket];
+        if (timeout.next != null) {
+            timeout.next.prev = timeout;
+        }
+        buckets[bucket] = timeout;
+        timeouts.put(flip.id, timeout);
+    }
+
+    public synchronized void cancel(UUID flipId) {
+        unlink(timeouts.remove(flipId));
+    }
+
+    /**
+     * Avance la roue d'un tick.
+     *
+     * @return les flips arrivés à échéance pendant ce tick
+     */
+    public synchronized List<CoinFlipManager.CoinFlip> advance() {
+        tick++;
+        Timeout timeout = buckets[(int) (tick & MASK)];
+        List<CoinFlipManager.CoinFlip> expired = null;
+
+        while (timeout != null) {
+            Timeout next = timeout.next;
+            if (timeout.remainingRounds == 0) {
+                timeouts.remove(timeout.flip.id);
+                unlink(timeout);
+                if (expired == null) {
+                    expired = new ArrayList<>();
+                }
+                expired.add(timeout.flip);
+            } else {
+                timeout.remainingRounds--;
+            }
+            timeout = next;
+        }
+
+        return expired == null ? Collections.emptyList() : expired;
+    }
+
+    public synchronized int size() {
+        return timeouts.size();
+    }
+
+    public synchronized void clear() {
+        timeouts.clear();
+        Arrays.fill(buckets, null);
+    }
+
+    private void unlink(Timeout timeout) {
+        if (timeout == null) return;
+
+        if (timeout.prev != null) {
+            timeout.prev.next = timeout.next;
+        } else {
+            buckets[timeout.bucket] = timeout.next;
+        }
+        if (timeout.next != null) {
+            timeout.next.prev = timeout.prev;
+        }
+        timeout.prev = null;
+        timeout.next = null;
+    }
+}
@@ -0,0 +1,379 @@
+package com.floye.coinflip;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Tirage vérifiable des CoinFlips, par chaîne de hachage.
+ * <p>
+ * Une chaîne part d'une graine secrète s[n] et remonte par s[i] = SHA-256(s[i+1]) jusqu'à
+ * s[0], l'engagement, publié avant le premier tirage. Les graines sont consommées dans
+ * l'ordre s[1], s[2]... : une graine révélée ne dit rien des suivantes, et n'importe qui
+ * peut vérifier qu'en la hachant i fois on retombe sur l'engagement.
+ * <p>
+ * Résultat d'un flip : premier bit de SHA-256(graine ‖ id du flip ‖ créateur ‖ participant),
+ * 0 = le créateur gagne. Les chaînes sont calculées d'avance en arrière-plan ; le tirage
+ * lui-même ne fait que lire un tableau et hacher dans des tampons par thread ; la trace du
+ * tirage n'est mise en forme qu'à l'écriture, sur le thread de persistance.
+ * <p>
+ * Une graine tirée pour un flip perdu dans un crash peut resservir après redémarrage : ce
+ * flip est alors remboursé par le journal, son tirage n'a jamais compté.
+ */
+public class CoinFlipFairness implements CoinFlipPersistence.Store {
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final Gson STATE_GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int RECENT_DRAWS = 10_000;
+    private static final int SEED_BYTES = 32;
+
+    // Trace d'un tirage, une ligne JSON par flip dans coinflip_draws.jsonl
+    public static class Draw {
+        public UUID flip;
+        public UUID creator;
+        public UUID participant;
+        public String commitment;
+        public int index;
+        public String seed;
+        public boolean creatorWins;
+        public long time;
+        // Graine brute : sa forme hexadécimale n'est calculée qu'à l'écriture ou à la vérification
+        transient byte[] seedBytes;
+
+        Draw complete() {
+            if (seed == null && seedBytes != null) {
+                seed = HexFormat.of().formatHex(seedBytes);
+            }
+            return this;
+        }
+    }
+
+    public record Verification(Draw draw, boolean outcomeMatches, boolean chainMatches) {
+    }
+
+    // Forme sur disque des chaînes : la graine de départ suffit à tout recalculer
+    private static class State {
+        String terminal;
+        int length;
+        int next;
+        String upcomingTerminal;
+        int upcomingLength;
+    }
+
+    private static final class Chain {
+        final byte[][] seeds; // seeds[0] = engagement, seeds[length] = graine secrète
+        final String commitment;
+        final AtomicInteger next;
+
+        Chain(byte[] terminal, int length, int next) {
+            seeds = new byte[length + 1][];
+            seeds[length] = terminal;
+            MessageDigest digest = sha256();
+            for (int i = length - 1; i >= 0; i--) {
+                seeds[i] = digest.digest(seeds[i + 1]);
+            }
+            commitment = HexFormat.of().formatHex(seeds[0]);
+            this.next = new AtomicInteger(Math.max(1, next));
+        }
+
+        static Chain generate(int length) {
+            byte[] terminal = new byte[SEED_BYTES];
+            new SecureRandom().nextBytes(terminal);
+            return new Chain(terminal, length, 1);
+        }
+
+        int length() {
+            return seeds.length - 1;
+        }
+    }
+
+    // Tampons réutilisés par thread : graine + trois UUID, puis l'empreinte
+    private static final class Hasher {
+        final MessageDigest digest = sha256();
+        final byte[] input = new byte[SEED_BYTES + 48];
+        final byte[] output = new byte[SEED_BYTES];
+    }
+
+    private static final ThreadLocal<Hasher> HASHERS = ThreadLocal.withInitial(Hasher::new);
+
+    private final Path statePath;
+    private final Path drawsPath;
+    // Protégés par this
+    private Chain current;
+    private Chain upcoming;
+    private CompletableFuture<Chain> pendingUpcoming;
+    private final List<Draw> unsaved = new ArrayList<>();
+    private final Map<UUID, Draw> recent = new LinkedHashMap<>(256, 0.75f, false) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<UUID, Draw> eldest) {
+            return size() > RECENT_DRAWS;
+        }
+    };
+    private volatile boolean dirty = false;
+
+    public CoinFlipFairness(Path statePath, Path drawsPath) {
+        this.statePath = statePath;
+        this.drawsPath = drawsPath;
+    }
+
+    /**
+     * Recharge les chaînes sauvegardées, ou en crée une. L'engagement courant est écrit dans
+     * les logs pour pouvoir être publié.
+     */
+    public synchronized void load() {
+        if (current != null) return;
+
+        State state = null;
+        if (Files.exists(statePath)) {
+            try {
+                state = STATE_GSON.fromJson(Files.readString(statePath, StandardCharsets.UTF_8), State.class);
+            } catch (IOException | JsonParseException e) {
+                CoinFlipMod.LOGGER.error("État du tirage vérifiable illisible, nouvelle chaîne : {}", statePath, e);
+            }
+        }
+
+        if (state != null && state.terminal != null && state.length > 0) {
+            current = new Chain(HexFormat.of().parseHex(state.terminal), state.length, state.next);
+            if (state.upcomingTerminal != null && state.upcomingLength > 0) {
+                upcoming = new Chain(HexFormat.of().parseHex(state.upcomingTerminal), state.upcomingLength, 1);
+            }
+        } else {
+            current = Chain.generate(chainLength());
+        }
+        dirty = true;
+        CoinFlipMod.LOGGER.info("Tirage CoinFlip vérifiable : engagement {} (graine {}/{})",
+                current.commitment, current.next.get(), current.length());
+        prepareUpcoming();
+    }
+
+    /**
+     * Tire le résultat d'un flip avec la graine suivante de la chaîne.
+     *
+     * @return true si le créateur gagne
+     */
+    public boolean draw(UUID flipId, UUID creator, UUID participant) {
+        Chain chain;
+        int index;
+        synchronized (this) {
+            if (current == null) {
+                load();
+            }
+            chain = current;
+            index = chain.next.getAndIncrement();
+            if (index > chain.length()) {
+                chain = rotate();
+                index = chain.next.getAndIncrement();
+            }
+        }
+
+        boolean creatorWins = creatorWins(chain.seeds[index], flipId, creator, participant);
+
+        Draw draw = new Draw();
+        draw.flip = flipId;
+        draw.creator = creator;
+        draw.participant = participant;
+        draw.commitment = chain.commitment;
+        draw.index = index;
+        draw.seedBytes = chain.seeds[index];
+        draw.creatorWins = creatorWins;
+        draw.time = System.currentTimeMillis();
+        synchronized (this) {
+            unsaved.add(draw);
+            recent.put(flipId, draw);
+            dirty = true;
+        }
+        return creatorWins;
+    }
+
+    public static boolean creatorWins(byte[] seed, UUID flipId, UUID creator, UUID participant) {
+        Hasher hasher = HASHERS.get();
+        byte[] input = hasher.input;
+        System.arraycopy(seed, 0, input, 0, SEED_BYTES);
+        putUuid(input, SEED_BYTES, flipId);
+        putUuid(input, SEED_BYTES + 16, creator);
+        putUuid(input, SEED_BYTES + 32, participant);
+
+        hasher.digest.update(input, 0, input.length);
+        try {
+            hasher.digest.digest(hasher.output, 0, SEED_BYTES);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+        return (hasher.output[0] & 1) == 0;
+    }
+
+    // Chaîne épuisée : la suivante, calculée d'avance, prend le relais
+    private Chain rotate() {
+        Chain next = upcoming;
+        if (next == null && pendingUpcoming != null) {
+            next = pendingUpcoming.join();
+        }
+        if (next == null) {
+            next = Chain.generate(chainLength());
+        }
+        current = next;
+        upcoming = null;
+        pendingUpcoming = null;
+        dirty = true;
+        CoinFlipMod.LOGGER.info("Nouvelle chaîne de tirage CoinFlip : engagement {}", current.commitment);
+        prepareUpcoming();
+        return current;
+    }
+
+    private void prepareUpcoming() {
+        if (upcoming != null || pendingUpcoming != null) return;
+
+        int length = chainLength();
+        CompletableFuture<Chain> future = CompletableFuture.supplyAsync(() -> Chain.generate(length));
+        pendingUpcoming = future;
+        future.thenAccept(chain -> {
+            synchronized (this) {
+                if (pendingUpcoming == future) {
+                    upcoming = chain;
+                    pendingUpcoming = null;
+                    dirty = true;
+                }
+            }
+        });
+    }
+
+    public synchronized String commitment() {
+        if (current == null) {
+            load();
+        }
+        return current.commitment;
+    }
+
+    public synchronized int nextIndex() {
+        return current == null ? 1 : current.next.get();
+    }
+
+    /**
+     * Retrouve le tirage d'un flip (mémoire, puis coinflip_draws.jsonl) et le recalcule :
+     * résultat à partir de la graine, et graine à partir de l'engagement.
+     */
+    public Optional<Verification> verify(UUID flipId) throws IOException {
+        Draw draw;
+        synchronized (this) {
+            draw = recent.get(flipId);
+        }
+        if (draw == null) {
+            draw = findOnDisk(flipId);
+        } else {
+            draw.complete();
+        }
+        if (draw == null || draw.seed == null || draw.commitment == null) {
+            return Optional.empty();
+        }
+
+        byte[] seed = HexFormat.of().parseHex(draw.seed);
+        boolean outcomeMatches = creatorWins(seed, draw.flip, draw.creator, draw.participant) == draw.creatorWins;
+
+        MessageDigest digest = sha256();
+        byte[] hash = seed;
+        for (int i = 0; i < draw.index; i++) {
+            hash = digest.digest(hash);
+        }
+        boolean chainMatches = HexFormat.of().formatHex(hash).equals(draw.commitment);
+        return Optional.of(new Verification(draw, outcomeMatches, chainMatches));
+    }
+
+    private Draw findOnDisk(UUID flipId) throws IOException {
+        if (!Files.exists(drawsPath)) return null;
+
+        String needle = flipId.toString();
+        try (BufferedReader reader = Files.newBufferedReader(drawsPath, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (!line.contains(needle)) continue;
+                try {
+                    Draw draw = GSON.fromJson(line, Draw.class);
+                    if (draw != null && flipId.equals(draw.flip)) {
+                        return draw;
+                    }
+                } catch (JsonParseException e) {
+                    // Dernière ligne tronquée par un crash
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        List<Draw> draws;
+        State state = new State();
+        synchronized (this) {
+            if (!dirty || current == null) return;
+            dirty = false;
+
+            draws = new ArrayList<>(unsaved);
+            unsaved.clear();
+            state.terminal = HexFormat.of().formatHex(current.seeds[current.length()]);
+            state.length = current.length();
+            state.next = current.next.get();
+            if (upcoming != null) {
+                state.upcomingTerminal = HexFormat.of().formatHex(upcoming.seeds[upcoming.length()]);
+                state.upcomingLength = upcoming.length();
+            }
+        }
+
+        try {
+            if (!draws.isEmpty()) {
+                Files.createDirectories(drawsPath.getParent());
+                try (BufferedWriter writer = Files.newBufferedWriter(drawsPath, StandardCharsets.UTF_8,
+                        StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+                    for (Draw draw : draws) {
+                        writer.write(GSON.toJson(draw.complete()));
+                        writer.newLine();
+                    }
+                }
+            }
+            CoinFlipPersistence.writeAtomically(statePath, STATE_GSON.toJson(state));
+        } catch (IOException e) {
+            synchronized (this) {
+                unsaved.addAll(0, draws);
+                dirty = true;
+            }
+            throw e;
+        }
+    }
+
+    private static int chainLength() {
+        return Math.max(16, CoinFlipMod.config.fairnessChainLength);
+    }
+
+    private static void putUuid(byte[] buffer, int offset, UUID uuid) {
+        putLong(buffer, offset, uuid.getMostSignificantBits());
+        putLong(buffer, offset + 8, uuid.getLeastSignificantBits());
+    }
+
+    private static void putLong(byte[] buffer, int offset, long value) {
+        for (int i = 7; i >= 0; i--) {
+            buffer[offset + i] = (byte) value;
+            value >>>= 8;
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
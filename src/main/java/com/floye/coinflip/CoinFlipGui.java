@@ -1,7 +1,12 @@
 package com.floye.coinflip;
 
+import com.floye.coinflip.CoinFlipMessages.Args;
+import com.floye.coinflip.CoinFlipMessages.MessageKey;
+import com.floye.coinflip.CoinFlipMessages.Placeholder;
 import eu.pb4.sgui.api.elements.GuiElementBuilder;
+import eu.pb4.sgui.api.elements.GuiElementInterface;
 import eu.pb4.sgui.api.gui.SimpleGui;
+import net.minecraft.item.Item;
 import net.minecraft.item.Items;
 import net.minecraft.screen.ScreenHandlerType;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -9,89 +14,297 @@ import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 
 import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 public class CoinFlipGui extends SimpleGui {
+    // Élément construit par flip, partagé entre toutes les GUIs ouvertes
+    private record CachedElement(long version, boolean creatorOnline, GuiElementInterface element) {
+    }
+
+    // Boutons de la dernière ligne : navigation, historique, tri et filtre de devise (clé "" = toutes)
+    private record Controls(long version, GuiElementInterface previous, GuiElementInterface next,
+                            GuiElementInterface history,
+                            Map<CoinFlipBook.Sort, GuiElementInterface> sorts,
+                            Map<String, GuiElementInterface> filters) {
+    }
+
+    private static final Map<UUID, CachedElement> ELEMENT_CACHE = new ConcurrentHashMap<>();
+    // Incrémentée à chaque rechargement de la config : invalide tous les éléments en cache
+    private static volatile long renderVersion = 0;
+    private static volatile Controls controls;
+
     private final ServerPlayerEntity player;
-    private int page = 0;
+    // Ce qui est actuellement affiché, pour n'envoyer que les slots modifiés
+    private final GuiElementInterface[] shown;
+    private final Set<UUID> shownFlips = new HashSet<>();
+    // Pagination par curseur : dernier flip de chaque page précédente
+    private final List<CoinFlipManager.CoinFlip> cursors = new ArrayList<>();
+    private CoinFlipManager.CoinFlip lastShown;
+    private boolean hasNextPage;
+    private CoinFlipBook.Sort sort = CoinFlipBook.Sort.NEWEST;
+    private String currencyFilter; // Alias, null = toutes les devises
 
     public CoinFlipGui(ServerPlayerEntity player) {
         super(ScreenHandlerType.GENERIC_9X6, player, false);
         this.player = player;
-
+        this.shown = new GuiElementInterface[this.getSize()];
 
         this.setTitle(Text.literal(CoinFlipMod.config.gui.mainTitle)
                 .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.primaryColor)));
-        initializeGui();
+        render();
     }
 
-    private void initializeGui() {
-        for (int i = 0; i < this.getSize(); i++) {
-            this.clearSlot(i);
-        }
+    public static void invalidate(UUID flipId) {
+        ELEMENT_CACHE.remove(flipId);
+    }
 
-        List<CoinFlipManager.CoinFlip> flips = new ArrayList<>(CoinFlipMod.coinFlipManager.getActiveFlips());
-        int itemsPerPage = CoinFlipMod.config.gui.itemsPerPage;
+    public static void invalidateAll() {
+        renderVersion++;
+        ELEMENT_CACHE.clear();
+        controls = null;
+    }
+
+    @Override
+    public void onOpen() {
+        super.onOpen();
+        CoinFlipMod.coinFlipManager.getLobby().subscribe(this);
+    }
 
-        for (int i = 0; i < itemsPerPage; i++) {
-            int index = page * itemsPerPage + i;
-            if (index >= flips.size()) break;
+    @Override
+    public void onClose() {
+        super.onClose();
+        CoinFlipMod.coinFlipManager.getLobby().unsubscribe(this);
+    }
 
-            CoinFlipManager.CoinFlip flip = flips.get(index);
-            ServerPlayerEntity creator = player.getServer().getPlayerManager().getPlayer(flip.creator);
-            String currencyAlias = CoinFlipMod.config.getCurrencyAliasFromKey(flip.currency);
+    /**
+     * Changements du carnet depuis le tick précédent. On ne refait le rendu que si un flip
+     * affiché disparaît, ou si un nouveau flip tombe dans la plage triée de la page courante ;
+     * le diff n'envoie ensuite que les slots réellement modifiés.
+     */
+    void onFlipsChanged(List<CoinFlipLobby.Delta> changes) {
+        Comparator<CoinFlipManager.CoinFlip> order = CoinFlipBook.comparator(sort);
+        String currencyKey = currencyKey();
+        CoinFlipManager.CoinFlip after = cursor();
 
-            // Formater le nom de l'entrée
-            String flipEntry = CoinFlipMod.config.gui.flipEntryFormat
-                    .replace("%player%", creator != null ? creator.getName().getString() : "Joueur Inconnu")
-                    .replace("%amount%", String.valueOf(flip.amount))
-                    .replace("%currency%", currencyAlias);
+        for (CoinFlipLobby.Delta delta : changes) {
+            CoinFlipManager.CoinFlip flip = delta.flip();
+            if (shownFlips.contains(flip.id)) {
+                render();
+                return;
+            }
 
-            // Créer le lore
-            List<Text> lore = new ArrayList<>();
-            lore.add(Text.literal(" "));
-            lore.add(Text.literal(CoinFlipMod.config.messages.clickToJoin)
-                    .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.successColor)));
+            boolean appears = delta.change() == CoinFlipLobby.Change.ADDED
+                    || delta.change() == CoinFlipLobby.Change.RELEASED;
+            if (!appears) continue;
+            if (currencyKey != null && !currencyKey.equals(flip.currency)) continue;
+            if (after != null && order.compare(flip, after) <= 0) continue; // Page précédente
+            if (hasNextPage && order.compare(flip, lastShown) > 0) continue; // Page suivante
 
-            GuiElementBuilder builder = new GuiElementBuilder(
-                    CoinFlipMod.config.gui.showPlayerHeads ? Items.PLAYER_HEAD : Items.GOLD_NUGGET)
-                    .setName(Text.literal(flipEntry));
+            render();
+            return;
+        }
+    }
 
-            if (CoinFlipMod.config.gui.showPlayerHeads && creator != null) {
-                builder.setSkullOwner(creator.getGameProfile(), player.getServer()); // Correction ici : ajout de player.getServer()
+    // Les entrées ne débordent jamais sur la ligne de contrôles
+    private int pageSize() {
+        return Math.max(1, Math.min(CoinFlipMod.config.gui.itemsPerPage, this.getSize() - 9));
+    }
+
+    private CoinFlipManager.CoinFlip cursor() {
+        return cursors.isEmpty() ? null : cursors.get(cursors.size() - 1);
+    }
+
+    private String currencyKey() {
+        return currencyFilter == null ? null : CoinFlipMod.config.getFullCurrencyKey(currencyFilter);
+    }
+
+    private void render() {
+        CoinFlipBook book = CoinFlipMod.coinFlipManager.getFlipBook();
+        int pageSize = pageSize();
+
+        // Une page de plus que nécessaire pour savoir s'il existe une page suivante
+        List<CoinFlipManager.CoinFlip> flips = book.page(sort, currencyKey(), cursor(), pageSize + 1);
+        if (flips.isEmpty() && !cursors.isEmpty()) {
+            // La page courante s'est vidée : on revient à la précédente
+            cursors.remove(cursors.size() - 1);
+            render();
+            return;
+        }
+        hasNextPage = flips.size() > pageSize;
+
+        shownFlips.clear();
+        lastShown = null;
+        for (int slot = 0; slot < pageSize; slot++) {
+            if (slot < flips.size()) {
+                CoinFlipManager.CoinFlip flip = flips.get(slot);
+                show(slot, elementFor(flip));
+                shownFlips.add(flip.id);
+                lastShown = flip;
+            } else {
+                show(slot, null);
             }
+        }
+
+        // Dernière ligne : navigation, tri, historique et filtre
+        Controls buttons = controls();
+        int row = this.getSize() - 9;
+        show(row, cursors.isEmpty() ? null : buttons.previous());
+        show(row + 3, buttons.sorts().get(sort));
+        show(row + 4, buttons.history());
+        show(row + 5, buttons.filters().get(currencyFilter == null ? "" : currencyFilter));
+        show(row + 8, hasNextPage ? buttons.next() : null);
+    }
+
+    private void show(int slot, GuiElementInterface element) {
+        if (slot >= shown.length || shown[slot] == element) return;
+
+        if (element == null) {
+            this.clearSlot(slot);
+        } else {
+            this.setSlot(slot, element);
+        }
+        shown[slot] = element;
+    }
+
+    private void nextPage() {
+        if (!hasNextPage || lastShown == null) return;
+        cursors.add(lastShown);
+        render();
+    }
+
+    private void previousPage() {
+        if (cursors.isEmpty()) return;
+        cursors.remove(cursors.size() - 1);
+        render();
+    }
+
+    private void openHistory() {
+        new CoinFlipHistoryGui(player, player.getUuid(), player.getName().getString()).open();
+    }
 
-            builder.setCallback((slot, type, action) -> {
-                handleFlipClick(flip, currencyAlias);
-            });
+    private void cycleSort() {
+        sort = sort.next();
+        cursors.clear();
+        render();
+    }
+
+    private void cycleCurrencyFilter() {
+        List<String> aliases = CoinFlipMod.config.getAvailableCurrencyAliases();
+        int index = currencyFilter == null ? -1 : aliases.indexOf(currencyFilter);
+        currencyFilter = index + 1 < aliases.size() ? aliases.get(index + 1) : null;
+        cursors.clear();
+        render();
+    }
 
-            this.setSlot(i, builder);
+    private GuiElementInterface elementFor(CoinFlipManager.CoinFlip flip) {
+        ServerPlayerEntity creator = player.getServer().getPlayerManager().getPlayer(flip.creator);
+        long version = renderVersion;
 
-            this.setSlot(i, builder);
+        CachedElement cached = ELEMENT_CACHE.get(flip.id);
+        if (cached != null && cached.version() == version && cached.creatorOnline() == (creator != null)) {
+            return cached.element();
         }
 
-        // Boutons de navigation
-        if (page > 0) {
-            this.setSlot(itemsPerPage + 1, new GuiElementBuilder(Items.ARROW)
-                    .setName(Text.literal(CoinFlipMod.config.gui.prevPageButton)
-                            .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.secondaryColor)))
-                    .setCallback((slot, type, action) -> {
-                        page--;
-                        initializeGui();
-                    }));
+        GuiElementInterface element = buildElement(flip, creator);
+        CachedElement entry = new CachedElement(version, creator != null, element);
+        ELEMENT_CACHE.put(flip.id, entry);
+        // Flip retiré pendant le rendu : invalidate() est peut-être passé avant notre put
+        if (CoinFlipMod.coinFlipManager.getFlipBook().get(flip.id) == null) {
+            ELEMENT_CACHE.remove(flip.id, entry);
         }
+        return element;
+    }
+
+    private GuiElementInterface buildElement(CoinFlipManager.CoinFlip flip, ServerPlayerEntity creator) {
+        String currencyAlias = CoinFlipMod.config.getCurrencyAliasFromKey(flip.currency);
+
+        // Formater le nom de l'entrée
+        Text flipEntry = CoinFlipMod.config.getText(MessageKey.FLIP_ENTRY,
+                Args.of(Placeholder.PLAYER, creator != null ? creator.getName().getString() : "Joueur Inconnu")
+                        .with(Placeholder.AMOUNT, String.valueOf(flip.amount))
+                        .with(Placeholder.CURRENCY, currencyAlias));
+
+        // Créer le lore
+        List<Text> lore = new ArrayList<>();
+        lore.add(Text.literal(" "));
+        lore.add(CoinFlipMod.config.getText(MessageKey.CLICK_TO_JOIN)
+                .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.successColor)));
+
+        GuiElementBuilder builder = new GuiElementBuilder(
+                CoinFlipMod.config.gui.showPlayerHeads ? Items.PLAYER_HEAD : Items.GOLD_NUGGET)
+                .setName(flipEntry)
+                .setLore(lore);
 
-        if ((page + 1) * itemsPerPage < flips.size()) {
-            this.setSlot(itemsPerPage + 7, new GuiElementBuilder(Items.ARROW)
-                    .setName(Text.literal(CoinFlipMod.config.gui.nextPageButton)
-                            .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.secondaryColor)))
-                    .setCallback((slot, type, action) -> {
-                        page++;
-                        initializeGui();
-                    }));
+        if (CoinFlipMod.config.gui.showPlayerHeads && creator != null) {
+            builder.setSkullOwner(creator.getGameProfile(), player.getServer());
         }
+
+        // L'élément est partagé : le callback agit sur la GUI qui a reçu le clic
+        builder.setCallback((index, type, action, gui) -> {
+            if (gui instanceof CoinFlipGui lobby) {
+                lobby.handleFlipClick(flip, currencyAlias);
+            }
+        });
+
+        return builder.build();
+    }
+
+    private static Controls controls() {
+        long version = renderVersion;
+        Controls current = controls;
+        if (current != null && current.version() == version) {
+            return current;
+        }
+
+        CoinFlipConfig.GuiConfig gui = CoinFlipMod.config.gui;
+        Formatting color = CoinFlipMod.config.getColorFormatting(gui.secondaryColor);
+
+        Map<CoinFlipBook.Sort, GuiElementInterface> sorts = new EnumMap<>(CoinFlipBook.Sort.class);
+        for (CoinFlipBook.Sort sort : CoinFlipBook.Sort.values()) {
+            String label = switch (sort) {
+                case AMOUNT_ASC -> gui.sortAmountAscending;
+                case AMOUNT_DESC -> gui.sortAmountDescending;
+                case NEWEST -> gui.sortNewest;
+                case EXPIRING_SOON -> gui.sortExpiringSoon;
+            };
+            sorts.put(sort, button(Items.HOPPER, gui.sortButton.replace("%sort%", label), color, CoinFlipGui::cycleSort));
+        }
+
+        Map<String, GuiElementInterface> filters = new HashMap<>();
+        filters.put("", button(Items.GOLD_INGOT, gui.currencyFilterButton.replace("%currency%", gui.allCurrencies),
+                color, CoinFlipGui::cycleCurrencyFilter));
+        for (String alias : CoinFlipMod.config.getAvailableCurrencyAliases()) {
+            filters.put(alias, button(Items.GOLD_INGOT, gui.currencyFilterButton.replace("%currency%", alias),
+                    color, CoinFlipGui::cycleCurrencyFilter));
+        }
+
+        current = new Controls(version,
+                button(Items.ARROW, gui.prevPageButton, color, CoinFlipGui::previousPage),
+                button(Items.ARROW, gui.nextPageButton, color, CoinFlipGui::nextPage),
+                button(Items.BOOK, gui.historyButton, color, CoinFlipGui::openHistory),
+                sorts, filters);
+        controls = current;
+        return current;
+    }
+
+    private static GuiElementInterface button(Item item, String name, Formatting color, Consumer<CoinFlipGui> action) {
+        return new GuiElementBuilder(item)
+                .setName(Text.literal(name).formatted(color))
+                .setCallback((index, type, clickAction, gui) -> {
+                    if (gui instanceof CoinFlipGui lobby) {
+                        action.accept(lobby);
+                    }
+                })
+                .build();
     }
 
     private void handleFlipClick(CoinFlipManager.CoinFlip flip, String currencyAlias) {
@@ -99,7 +312,7 @@ public class CoinFlipGui extends SimpleGui {
 
         // 1. Bloquer si c'est son propre flip
         if (player.getUuid().equals(creatorId)) {
-            player.sendMessage(Text.literal(CoinFlipMod.config.messages.joinOwnFlip)
+            player.sendMessage(CoinFlipMod.config.getText(MessageKey.JOIN_OWN_FLIP)
                     .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.errorColor)));
             return;
         }
@@ -115,8 +328,8 @@ public class CoinFlipGui extends SimpleGui {
         CoinFlipMod.coinFlipManager.joinFlip(player, creatorId, flip.getId()).thenAccept(success -> {
             if (!success) {
                 this.close();
-                player.sendMessage(Text.literal(
-                                CoinFlipMod.config.messages.notEnoughMoney.replace("%currency%", currencyAlias))
+                player.sendMessage(CoinFlipMod.config.getText(MessageKey.NOT_ENOUGH_MONEY,
+                                Args.of(Placeholder.CURRENCY, currencyAlias))
                         .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.errorColor)));
             }
         });
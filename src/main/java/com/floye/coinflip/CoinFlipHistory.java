@@ -0,0 +1,447 @@
+package com.floye.coinflip;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Historique des flips résolus, sur des segments de taille fixe projetés en mémoire (mmap).
+ * <pre>
+ * segment : en-tête de 16 octets (magic, version, nombre d'enregistrements, réservé)
+ *           puis des enregistrements de 80 octets :
+ *   0 id du flip | 16 créateur | 32 participant (2 longs chacun) | 48 date (long)
+ *  56 gain (double) | 64 taxe (double) | 72 mise (int) | 76 devise (short) | 78 drapeaux
+ * </pre>
+ * Un index en mémoire garde, par joueur, la position de chacun de ses enregistrements :
+ * une page d'historique ne lit que les enregistrements affichés. L'index est reconstruit au
+ * démarrage en ne lisant que les colonnes créateur et participant.
+ * <p>
+ * Un nouveau segment est ouvert quand le courant est plein ({@code historySegmentRecords})
+ * ou trop vieux ({@code historySegmentMaxAgeHours}). Tout le travail disque passe par le writer
+ * de {@link CoinFlipPersistence} : il garde un segment vide d'avance, écrit la table des
+ * devises et force l'écriture du segment courant. {@link #append} n'écrit qu'en mémoire.
+ */
+public class CoinFlipHistory implements CoinFlipPersistence.Store {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final int MAGIC = 0x43464849; // "CFHI"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 16;
+    private static final int COUNT_OFFSET = 8;
+    public static final int RECORD_BYTES = 80;
+    private static final int FLAG_CREATOR_WON = 1;
+
+    public record Entry(UUID flipId, UUID creator, UUID participant, boolean creatorWon, int amount,
+                        String currency, double payout, double tax, long time) {
+        public boolean won(UUID player) {
+            return creatorWon == player.equals(creator);
+        }
+
+        public UUID opponentOf(UUID player) {
+            return player.equals(creator) ? participant : creator;
+        }
+    }
+
+    private static final class Segment {
+        final int sequence;
+        final long createdAt;
+        final int capacity;
+        final MappedByteBuffer buffer;
+        int count;
+
+        Segment(int sequence, long createdAt, int capacity, MappedByteBuffer buffer, int count) {
+            this.sequence = sequence;
+            this.createdAt = createdAt;
+            this.capacity = capacity;
+            this.buffer = buffer;
+            this.count = count;
+        }
+    }
+
+    // Positions (segment << 32 | emplacement) des enregistrements d'un joueur, du plus ancien au plus récent
+    private static final class Refs {
+        long[] refs = new long[4];
+        int size;
+
+        void add(long ref) {
+            if (size == refs.length) {
+                refs = Arrays.copyOf(refs, size * 2);
+            }
+            refs[size++] = ref;
+        }
+    }
+
+    private final Path directory;
+    private final Path currenciesPath;
+    // Protégés par this
+    private final NavigableMap<Integer, Segment> segments = new TreeMap<>();
+    private final Map<UUID, Refs> index = new HashMap<>();
+    private final List<String> currencies = new ArrayList<>();
+    private final Map<String, Short> currencyIds = new HashMap<>();
+    private final List<MappedByteBuffer> retired = new ArrayList<>(); // Segments quittés, à forcer une dernière fois
+    private Segment active;
+    private Segment spare; // Segment vide préparé par le writer, pris à la prochaine rotation
+    private int nextSequence = 0;
+    private boolean loaded = false;
+    private boolean currenciesDirty = false;
+    private volatile boolean dirty = false;
+
+    public CoinFlipHistory(Path directory) {
+        this.directory = directory;
+        this.currenciesPath = directory.resolve("currencies.json");
+    }
+
+    /**
+     * Projette les segments existants et reconstruit l'index par joueur. Appelé une fois au démarrage.
+     */
+    public synchronized void load() throws IOException {
+        if (loaded) return;
+        loaded = true;
+        Files.createDirectories(directory);
+
+        if (Files.exists(currenciesPath)) {
+            try {
+                List<String> saved = GSON.fromJson(Files.readString(currenciesPath, StandardCharsets.UTF_8),
+                        new TypeToken<List<String>>() {}.getType());
+                if (saved != null) {
+                    for (String currency : saved) {
+                        currencyIds.putIfAbsent(currency, (short) currencies.size());
+                        currencies.add(currency);
+                    }
+                }
+            } catch (JsonParseException e) {
+                CoinFlipMod.LOGGER.error("Table des devises de l'historique illisible : {}", currenciesPath, e);
+            }
+        }
+
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "history-*.dat")) {
+            stream.forEach(files::add);
+        }
+        files.sort(Comparator.comparingInt(CoinFlipHistory::sequenceOf));
+
+        long records = 0;
+        Path last = null;
+        for (Path file : files) {
+            nextSequence = Math.max(nextSequence, sequenceOf(file) + 1);
+            Segment segment = open(file, false);
+            if (segment == null) continue;
+
+            segments.put(segment.sequence, segment);
+            for (int slot = 0; slot < segment.count; slot++) {
+                indexRecord(segment, slot);
+            }
+            records += segment.count;
+            active = segment;
+            last = file;
+        }
+
+        // Le dernier segment reste ouvert en écriture s'il a encore de la place ; s'il est trop
+        // vieux, il est remplacé par le segment d'avance dès que le writer l'a préparé
+        if (active != null && active.count < active.capacity) {
+            Segment writable = open(last, true);
+            if (writable != null) {
+                segments.put(writable.sequence, writable);
+                active = writable;
+            }
+        } else {
+            active = null;
+        }
+        if (active == null) {
+            rotate(create(nextSequence++));
+        }
+        CoinFlipMod.LOGGER.info("Historique CoinFlip : {} flips dans {} segments, {} joueurs", records, segments.size(), index.size());
+    }
+
+    /**
+     * Ajoute un flip résolu ; renvoie false si l'écriture a échoué (l'erreur est déjà journalisée).
+     */
+    public synchronized boolean append(Entry entry) {
+        try {
+            if (active == null || needsRotation(active)) {
+                if (spare != null) {
+                    rotate(spare);
+                    spare = null;
+                } else if (active == null || active.count >= active.capacity) {
+                    // Le writer n'a pas encore préparé le segment suivant : création sur place
+                    CoinFlipMod.LOGGER.warn("Segment d'historique suivant pas encore prêt, création immédiate");
+                    rotate(create(nextSequence++));
+                }
+                // Sinon le segment trop vieux sert encore jusqu'au prochain passage du writer
+            }
+
+            int slot = active.count;
+            int position = HEADER_BYTES + slot * RECORD_BYTES;
+            MappedByteBuffer buffer = active.buffer;
+            putUuid(buffer, position, entry.flipId());
+            putUuid(buffer, position + 16, entry.creator());
+            putUuid(buffer, position + 32, entry.participant());
+            buffer.putLong(position + 48, entry.time());
+            buffer.putDouble(position + 56, entry.payout());
+            buffer.putDouble(position + 64, entry.tax());
+            buffer.putInt(position + 72, entry.amount());
+            buffer.putShort(position + 76, internCurrency(entry.currency()));
+            buffer.put(position + 78, (byte) (entry.creatorWon() ? FLAG_CREATOR_WON : 0));
+            // Le compteur passe en dernier : un enregistrement à moitié écrit n'est jamais relu
+            active.count = slot + 1;
+            buffer.putInt(COUNT_OFFSET, active.count);
+
+            indexRecord(active, slot);
+            dirty = true;
+            return true;
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.error("Impossible d'écrire le flip {} dans l'historique", entry.flipId(), e);
+            return false;
+        }
+    }
+
+    // Nombre total d'enregistrements, tous segments confondus
+    public synchronized long size() {
+        long size = 0;
+        for (Segment segment : segments.values()) {
+            size += segment.count;
+        }
+        return size;
+    }
+
+    /**
+     * Relit dans l'ordre d'écriture les enregistrements à partir du {@code from}-ième (à partir de 0).
+     * Les segments entièrement avant {@code from} ne sont pas lus.
+     */
+    public synchronized void replay(long from, Consumer<Entry> sink) {
+        long position = 0;
+        for (Segment segment : segments.values()) {
+            if (position + segment.count <= from) {
+                position += segment.count;
+                continue;
+            }
+            for (int slot = (int) Math.max(0, from - position); slot < segment.count; slot++) {
+                sink.accept(read(segment, slot));
+            }
+            position += segment.count;
+        }
+    }
+
+    public synchronized int count(UUID player) {
+        Refs refs = index.get(player);
+        return refs == null ? 0 : refs.size;
+    }
+
+    /**
+     * Page {@code page} (à partir de 0) de l'historique d'un joueur, du plus récent au plus ancien.
+     * Seuls les enregistrements de la page sont lus.
+     */
+    public synchronized List<Entry> page(UUID player, int page, int pageSize) {
+        Refs refs = index.get(player);
+        if (refs == null || page < 0) return List.of();
+
+        int newest = refs.size - 1 - page * pageSize;
+        List<Entry> entries = new ArrayList<>(pageSize);
+        for (int i = newest; i >= 0 && i > newest - pageSize; i--) {
+            long ref = refs.refs[i];
+            Segment segment = segments.get((int) (ref >>> 32));
+            if (segment != null) {
+                entries.add(read(segment, (int) ref));
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Écrit la table des devises puis force le segment courant, et prépare le segment suivant
+     * pour que {@link #append} n'ait jamais à créer de fichier.
+     */
+    @Override
+    public void flush() throws IOException {
+        String currencyTable = null;
+        MappedByteBuffer buffer = null;
+        List<MappedByteBuffer> toForce;
+        int spareSequence = -1;
+        synchronized (this) {
+            if (!loaded) return;
+            if (currenciesDirty) {
+                currenciesDirty = false;
+                currencyTable = GSON.toJson(currencies);
+            }
+            if (dirty && active != null) {
+                dirty = false;
+                buffer = active.buffer;
+            }
+            toForce = new ArrayList<>(retired);
+            retired.clear();
+            if (spare == null) {
+                spareSequence = nextSequence++;
+            }
+        }
+
+        // La table passe avant le segment : un enregistrement sur disque a toujours sa devise
+        if (currencyTable != null) {
+            try {
+                CoinFlipPersistence.writeAtomically(currenciesPath, currencyTable);
+            } catch (IOException e) {
+                synchronized (this) {
+                    currenciesDirty = true;
+                    retired.addAll(toForce);
+                    dirty |= buffer != null;
+                }
+                throw e;
+            }
+        }
+        for (MappedByteBuffer previous : toForce) {
+            previous.force();
+        }
+        if (buffer != null) {
+            buffer.force();
+        }
+
+        if (spareSequence >= 0) {
+            // Un échec ici ne doit pas bloquer le journal : on réessaie au prochain passage
+            Segment created;
+            try {
+                created = create(spareSequence);
+            } catch (IOException e) {
+                CoinFlipMod.LOGGER.error("Impossible de préparer le segment d'historique suivant", e);
+                return;
+            }
+            synchronized (this) {
+                // Une création sur place a pu passer devant : l'ordre des segments doit suivre celui des écritures
+                if (spare == null && (active == null || active.sequence < created.sequence)) {
+                    spare = created;
+                    return;
+                }
+            }
+            Files.deleteIfExists(directory.resolve(fileName(created.sequence, created.createdAt)));
+        }
+    }
+
+    private boolean needsRotation(Segment segment) {
+        long maxAge = CoinFlipMod.config.historySegmentMaxAgeHours * 3_600_000L;
+        return segment.count >= segment.capacity
+                || (maxAge > 0 && System.currentTimeMillis() - segment.createdAt >= maxAge);
+    }
+
+    // L'âge d'un segment part de sa première utilisation, pas de sa préparation ; le segment
+    // quitté reste sale pour que le writer le force une dernière fois
+    private void rotate(Segment next) {
+        if (active != null) {
+            retired.add(active.buffer);
+        }
+        active = new Segment(next.sequence, System.currentTimeMillis(), next.capacity, next.buffer, 0);
+        segments.put(active.sequence, active);
+    }
+
+    private Segment create(int sequence) throws IOException {
+        long now = System.currentTimeMillis();
+        int capacity = Math.max(1, CoinFlipMod.config.historySegmentRecords);
+
+        Path file = directory.resolve(fileName(sequence, now));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_BYTES + (long) capacity * RECORD_BYTES);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(COUNT_OFFSET, 0);
+            return new Segment(sequence, now, capacity, buffer, 0);
+        }
+    }
+
+    // Les projections restent valides après la fermeture du canal
+    private Segment open(Path file, boolean writable) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, writable
+                ? EnumSet.of(StandardOpenOption.READ, StandardOpenOption.WRITE)
+                : EnumSet.of(StandardOpenOption.READ))) {
+            long size = channel.size();
+            if (size < HEADER_BYTES) {
+                CoinFlipMod.LOGGER.warn("Segment d'historique trop court ignoré : {}", file);
+                return null;
+            }
+            MappedByteBuffer buffer = channel.map(writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY, 0, size);
+            if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+                CoinFlipMod.LOGGER.warn("Segment d'historique inconnu ignoré : {}", file);
+                return null;
+            }
+            int capacity = (int) ((size - HEADER_BYTES) / RECORD_BYTES);
+            int count = Math.min(buffer.getInt(COUNT_OFFSET), capacity);
+            // Un segment encore vide (préparé d'avance) n'a pas commencé à vieillir
+            long createdAt = count == 0 ? System.currentTimeMillis() : createdAtOf(file);
+            return new Segment(sequenceOf(file), createdAt, capacity, buffer, count);
+        }
+    }
+
+    private void indexRecord(Segment segment, int slot) {
+        int position = HEADER_BYTES + slot * RECORD_BYTES;
+        long ref = ((long) segment.sequence << 32) | slot;
+        index.computeIfAbsent(getUuid(segment.buffer, position + 16), player -> new Refs()).add(ref);
+        index.computeIfAbsent(getUuid(segment.buffer, position + 32), player -> new Refs()).add(ref);
+    }
+
+    private Entry read(Segment segment, int slot) {
+        MappedByteBuffer buffer = segment.buffer;
+        int position = HEADER_BYTES + slot * RECORD_BYTES;
+        short currency = buffer.getShort(position + 76);
+        return new Entry(
+                getUuid(buffer, position),
+                getUuid(buffer, position + 16),
+                getUuid(buffer, position + 32),
+                (buffer.get(position + 78) & FLAG_CREATOR_WON) != 0,
+                buffer.getInt(position + 72),
+                currency >= 0 && currency < currencies.size() ? currencies.get(currency) : "?",
+                buffer.getDouble(position + 56),
+                buffer.getDouble(position + 64),
+                buffer.getLong(position + 48));
+    }
+
+    // Chaque devise reçoit un numéro stable, la table est réécrite par le writer à chaque nouvelle devise
+    private short internCurrency(String currency) {
+        Short id = currencyIds.get(currency);
+        if (id != null) return id;
+
+        short next = (short) currencies.size();
+        currencies.add(currency);
+        currencyIds.put(currency, next);
+        currenciesDirty = true;
+        return next;
+    }
+
+    private static String fileName(int sequence, long createdAt) {
+        return String.format("history-%08d-%d.dat", sequence, createdAt);
+    }
+
+    private static int sequenceOf(Path file) {
+        String[] parts = file.getFileName().toString().split("[-.]");
+        try {
+            return Integer.parseInt(parts[1]);
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+
+    private static long createdAtOf(Path file) {
+        String[] parts = file.getFileName().toString().split("[-.]");
+        try {
+            return Long.parseLong(parts[2]);
+        } catch (RuntimeException e) {
+            return 0;
+        }
+    }
+
+    private static void putUuid(MappedByteBuffer buffer, int position, UUID uuid) {
+        buffer.putLong(position, uuid.getMostSignificantBits());
+        buffer.putLong(position + 8, uuid.getLeastSignificantBits());
+    }
+
+    private static UUID getUuid(MappedByteBuffer buffer, int position) {
+        return new UUID(buffer.getLong(position), buffer.getLong(position + 8));
+    }
+}
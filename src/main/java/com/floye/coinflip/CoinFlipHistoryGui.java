@@ -0,0 +1,142 @@
+package com.floye.coinflip;
+
+import com.floye.coinflip.CoinFlipMessages.Args;
+import com.floye.coinflip.CoinFlipMessages.MessageKey;
+import com.floye.coinflip.CoinFlipMessages.Placeholder;
+import eu.pb4.sgui.api.elements.GuiElementBuilder;
+import eu.pb4.sgui.api.gui.SimpleGui;
+import net.minecraft.item.Items;
+import net.minecraft.screen.ScreenHandlerType;
+import net.minecraft.server.MinecraftServer;
+import net.minecraft.server.network.ServerPlayerEntity;
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Historique d'un joueur, page par page : seuls les flips de la page affichée sont lus.
+ * La dernière ligne montre aussi ses statistiques cumulées, par devise.
+ */
+public class CoinFlipHistoryGui extends SimpleGui {
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm")
+            .withZone(ZoneId.systemDefault());
+
+    private final UUID target;
+    private int page = 0;
+
+    public CoinFlipHistoryGui(ServerPlayerEntity player, UUID target, String targetName) {
+        super(ScreenHandlerType.GENERIC_9X6, player, false);
+        this.target = target;
+
+        this.setTitle(Text.literal(CoinFlipMod.config.gui.historyTitle + " - " + targetName)
+                .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.primaryColor)));
+        render();
+    }
+
+    /**
+     * Ligne d'historique vue par {@code viewpoint} : gain net de taxe si gagné, mise si perdu.
+     */
+    static MutableText entryText(MinecraftServer server, CoinFlipHistory.Entry entry, UUID viewpoint) {
+        boolean won = entry.won(viewpoint);
+        return CoinFlipMod.config.getText(won ? MessageKey.HISTORY_ENTRY_WON : MessageKey.HISTORY_ENTRY_LOST,
+                Args.of(Placeholder.TIME, TIME_FORMAT.format(Instant.ofEpochMilli(entry.time())))
+                        .with(Placeholder.AMOUNT, won ? String.format("%.2f", entry.payout()) : String.valueOf(entry.amount()))
+                        .with(Placeholder.CURRENCY, CoinFlipMod.config.getCurrencyAliasFromKey(entry.currency()))
+                        .with(Placeholder.TAX, String.format("%.2f", entry.tax()))
+                        .with(Placeholder.ID, entry.flipId().toString())
+                        .with(Placeholder.PLAYER, nameOf(server, entry.opponentOf(viewpoint))));
+    }
+
+    // Les joueurs hors ligne sont cherchés dans le cache de profils du serveur
+    static String nameOf(MinecraftServer server, UUID uuid) {
+        ServerPlayerEntity online = server.getPlayerManager().getPlayer(uuid);
+        if (online != null) {
+            return online.getName().getString();
+        }
+        if (server.getUserCache() == null) {
+            return uuid.toString();
+        }
+        return server.getUserCache().getByUuid(uuid).map(profile -> profile.getName()).orElse(uuid.toString());
+    }
+
+    private int pageSize() {
+        return this.getSize() - 9;
+    }
+
+    private void render() {
+        CoinFlipHistory history = CoinFlipMod.coinFlipManager.getHistory();
+        int pageSize = pageSize();
+        List<CoinFlipHistory.Entry> entries = history.page(target, page, pageSize);
+        boolean hasNextPage = (long) (page + 1) * pageSize < history.count(target);
+
+        for (int slot = 0; slot < pageSize; slot++) {
+            if (slot < entries.size()) {
+                this.setSlot(slot, elementFor(entries.get(slot)));
+            } else {
+                this.clearSlot(slot);
+            }
+        }
+
+        CoinFlipConfig.GuiConfig gui = CoinFlipMod.config.gui;
+        Formatting color = CoinFlipMod.config.getColorFormatting(gui.secondaryColor);
+        int row = this.getSize() - 9;
+
+        if (page > 0) {
+            this.setSlot(row, new GuiElementBuilder(Items.ARROW)
+                    .setName(Text.literal(gui.prevPageButton).formatted(color))
+                    .setCallback((index, type, action) -> {
+                        page--;
+                        render();
+                    }));
+        } else {
+            this.clearSlot(row);
+        }
+
+        this.setSlot(row + 3, statsElement());
+
+        this.setSlot(row + 4, new GuiElementBuilder(Items.BARRIER)
+                .setName(Text.literal(gui.backButton).formatted(color))
+                .setCallback((index, type, action) -> new CoinFlipGui(this.getPlayer()).open()));
+
+        if (hasNextPage) {
+            this.setSlot(row + 8, new GuiElementBuilder(Items.ARROW)
+                    .setName(Text.literal(gui.nextPageButton).formatted(color))
+                    .setCallback((index, type, action) -> {
+                        page++;
+                        render();
+                    }));
+        } else {
+            this.clearSlot(row + 8);
+        }
+    }
+
+    // Statistiques cumulées du joueur, une ligne par devise
+    private GuiElementBuilder statsElement() {
+        GuiElementBuilder builder = new GuiElementBuilder(Items.GOLD_BLOCK)
+                .setName(Text.literal(CoinFlipMod.config.gui.statsTitle)
+                        .formatted(CoinFlipMod.config.getColorFormatting(CoinFlipMod.config.gui.primaryColor)));
+        for (CoinFlipLeaderboards.PlayerStats stats : CoinFlipMod.coinFlipManager.getLeaderboards().stats(target)) {
+            builder.addLoreLine(CoinFlipMod.config.getText(MessageKey.STATS_ENTRY,
+                    Args.of(Placeholder.CURRENCY, CoinFlipMod.config.getCurrencyAliasFromKey(stats.currency()))
+                            .with(Placeholder.WINS, String.valueOf(stats.wins()))
+                            .with(Placeholder.LOSSES, String.valueOf(stats.losses()))
+                            .with(Placeholder.PROFIT, String.format("%.2f", stats.profit()))
+                            .with(Placeholder.VOLUME, String.valueOf(stats.volume()))
+                            .with(Placeholder.TAX, String.format("%.2f", stats.tax()))));
+        }
+        return builder;
+    }
+
+    private GuiElementBuilder elementFor(CoinFlipHistory.Entry entry) {
+        boolean won = entry.won(target);
+        return new GuiElementBuilder(won ? Items.EMERALD : Items.REDSTONE)
+                .setName(entryText(this.getPlayer().getServer(), entry, target))
+                .addLoreLine(Text.literal(entry.flipId().toString()).formatted(Formatting.DARK_GRAY));
+    }
+}
@@ -0,0 +1,274 @@
+package com.floye.coinflip;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Journal append-only du cycle de vie des CoinFlips.
+ * Chaque événement ajoute une ligne JSON au journal ; l'état complet n'est réécrit
+ * que lors d'une compaction (snapshot), ce qui rend la persistance O(1) par événement.
+ * Les écritures sont faites par {@link CoinFlipPersistence}, jamais depuis les chemins de jeu.
+ */
+public class CoinFlipJournal {
+    public enum EventType {
+        CREATED,
+        JOINED,
+        RESOLVED,
+        CANCELLED,
+        REFUNDED
+    }
+
+    // Même forme que l'ancien format de sauvegarde, les anciens fichiers restent lisibles
+    public static class Entry {
+        public EventType type;
+        public UUID id;
+        public UUID creator;
+        public UUID participant;
+        public int amount;
+        public String currency;
+        public long time;
+
+        public static Entry of(EventType type, CoinFlipManager.CoinFlip flip) {
+            Entry entry = new Entry();
+            entry.type = type;
+            entry.id = flip.id;
+            entry.creator = flip.creator;
+            entry.participant = type == EventType.CREATED ? null : flip.getJoiner();
+            entry.amount = flip.amount;
+            entry.currency = flip.currency;
+            entry.time = System.currentTimeMillis();
+            return entry;
+        }
+    }
+
+    private static final Gson GSON = new GsonBuilder().create();
+    private static final Gson SNAPSHOT_GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private final Path snapshotPath;     // Binaire, voir CoinFlipSnapshot
+    private final Path jsonSnapshotPath; // Ancien format, toujours lu et écrit si snapshotFormat = "json"
+    private final Path journalPath;
+    private BufferedWriter writer;
+    private int recordsSinceCompaction = 0;
+
+    public CoinFlipJournal(Path snapshotPath, Path jsonSnapshotPath, Path journalPath) {
+        this.snapshotPath = snapshotPath;
+        this.jsonSnapshotPath = jsonSnapshotPath;
+        this.journalPath = journalPath;
+    }
+
+    /**
+     * Ajoute un lot d'événements à la fin du journal, en une seule écriture.
+     */
+    public synchronized void append(List<Entry> entries) throws IOException {
+        if (entries.isEmpty()) return;
+
+        if (writer == null) {
+            Files.createDirectories(journalPath.getParent());
+            writer = Files.newBufferedWriter(journalPath, StandardCharsets.UTF_8,
+                    StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        for (Entry entry : entries) {
+            writer.write(GSON.toJson(entry));
+            writer.newLine();
+        }
+        writer.flush();
+        recordsSinceCompaction += entries.size();
+    }
+
+    public synchronized boolean needsCompaction() {
+        return recordsSinceCompaction >= CoinFlipMod.config.journalCompactionThreshold;
+    }
+
+    /**
+     * Écrit un snapshot des flips ouverts (remplacement atomique) puis tronque le journal.
+     * Un crash entre les deux laisse un journal déjà couvert par le snapshot, que le rejeu
+     * applique sans effet de bord. Le snapshot de l'autre format est supprimé ensuite.
+     */
+    public synchronized void compact(Collection<CoinFlipManager.CoinFlip> openFlips) throws IOException {
+        List<Entry> entries = toEntries(openFlips);
+
+        if (CoinFlipMod.config.isJsonSnapshot()) {
+            CoinFlipPersistence.writeAtomically(jsonSnapshotPath, SNAPSHOT_GSON.toJson(entries));
+            Files.deleteIfExists(snapshotPath);
+        } else {
+            CoinFlipSnapshot.write(snapshotPath, entries);
+            Files.deleteIfExists(jsonSnapshotPath);
+        }
+        closeWriter();
+        Files.deleteIfExists(journalPath);
+        recordsSinceCompaction = 0;
+    }
+
+    /**
+     * Export JSON lisible des flips ouverts. Renommé en coinflip_data.json, il est relu
+     * (import) au prochain démarrage comme un snapshot.
+     */
+    public static void exportJson(Path target, Collection<CoinFlipManager.CoinFlip> openFlips) throws IOException {
+        CoinFlipPersistence.writeAtomically(target, SNAPSHOT_GSON.toJson(toEntries(openFlips)));
+    }
+
+    private static List<Entry> toEntries(Collection<CoinFlipManager.CoinFlip> openFlips) {
+        List<Entry> entries = new ArrayList<>(openFlips.size());
+        for (CoinFlipManager.CoinFlip flip : openFlips) {
+            // Les copies répliquées sont sauvegardées par leur propre serveur
+            if (flip.isRemote()) continue;
+            entries.add(Entry.of(flip.getState() == CoinFlipManager.CoinFlip.State.SETTLING ? EventType.JOINED : EventType.CREATED, flip));
+        }
+        return entries;
+    }
+
+    /**
+     * Rejoue le snapshot puis le journal et retourne les flips qui n'ont jamais été clôturés.
+     */
+    public Collection<Entry> replay() throws IOException {
+        List<Entry> open = new ArrayList<>();
+        replay(open::add);
+        return open;
+    }
+
+    /**
+     * Variante en flux : chaque flip jamais clôturé est passé à {@code sink} dès qu'il est lu.
+     * Le journal, borné par la compaction, est lu en premier ; le snapshot, qui peut être très
+     * gros, est ensuite parcouru entrée par entrée sans être chargé en mémoire.
+     */
+    public synchronized void replay(Consumer<Entry> sink) throws IOException {
+        Set<UUID> closed = new HashSet<>();
+        Map<UUID, UUID> joined = new HashMap<>();
+        Map<UUID, Entry> created = new LinkedHashMap<>();
+
+        if (Files.exists(journalPath)) {
+            try (BufferedReader reader = Files.newBufferedReader(journalPath, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) continue;
+
+                    Entry entry;
+                    try {
+                        entry = GSON.fromJson(line, Entry.class);
+                    } catch (JsonParseException e) {
+                        // Dernière ligne tronquée par un crash : on l'ignore
+                        CoinFlipMod.LOGGER.warn("Entrée de journal CoinFlip illisible ignorée: {}", line);
+                        continue;
+                    }
+                    if (entry == null || entry.type == null || entry.id == null) continue;
+
+                    switch (entry.type) {
+                        case CREATED -> created.putIfAbsent(entry.id, entry);
+                        case JOINED -> joined.put(entry.id, entry.participant);
+                        case RESOLVED, CANCELLED, REFUNDED -> closed.add(entry.id);
+                    }
+                }
+            }
+        }
+
+        Consumer<Entry> fromSnapshot = entry -> {
+            if (entry == null || entry.id == null) return;
+
+            // Crash entre snapshot et troncature : le snapshot l'emporte sur le CREATED du journal
+            created.remove(entry.id);
+            emit(entry, closed, joined, sink);
+        };
+        // Les deux formats présents (crash pendant un changement de format, ou import) : le plus récent fait foi
+        Path snapshot = newest(snapshotPath, jsonSnapshotPath);
+        if (snapshot == snapshotPath) {
+            try {
+                CoinFlipSnapshot.verify(snapshotPath);
+            } catch (CoinFlipSnapshot.CorruptSnapshotException e) {
+                // Rien n'a encore été livré : on peut se rabattre sur l'ancien snapshot JSON s'il existe
+                if (!Files.exists(jsonSnapshotPath)) throw e;
+                CoinFlipMod.LOGGER.error("Snapshot binaire CoinFlip inutilisable, lecture de {} à la place", jsonSnapshotPath, e);
+                snapshot = jsonSnapshotPath;
+            }
+        }
+        if (snapshot == snapshotPath) {
+            CoinFlipSnapshot.read(snapshotPath, fromSnapshot);
+        } else if (snapshot == jsonSnapshotPath) {
+            try (JsonReader reader = new JsonReader(Files.newBufferedReader(jsonSnapshotPath, StandardCharsets.UTF_8))) {
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    fromSnapshot.accept(SNAPSHOT_GSON.fromJson(reader, Entry.class));
+                }
+                reader.endArray();
+            }
+        }
+
+        for (Entry entry : created.values()) {
+            emit(entry, closed, joined, sink);
+        }
+    }
+
+    private static Path newest(Path binary, Path json) throws IOException {
+        boolean hasBinary = Files.exists(binary);
+        boolean hasJson = Files.exists(json);
+        if (hasBinary && hasJson) {
+            return Files.getLastModifiedTime(json).compareTo(Files.getLastModifiedTime(binary)) > 0 ? json : binary;
+        }
+        return hasBinary ? binary : hasJson ? json : null;
+    }
+
+    private static void emit(Entry entry, Set<UUID> closed, Map<UUID, UUID> joined, Consumer<Entry> sink) {
+        if (closed.contains(entry.id)) return;
+
+        UUID participant = joined.get(entry.id);
+        if (participant != null) {
+            entry.participant = participant;
+        }
+        sink.accept(entry);
+    }
+
+    /**
+     * Supprime le snapshot et le journal une fois leur contenu pris en charge.
+     */
+    public synchronized void clear() throws IOException {
+        closeWriter();
+        Files.deleteIfExists(snapshotPath);
+        Files.deleteIfExists(jsonSnapshotPath);
+        Files.deleteIfExists(journalPath);
+        recordsSinceCompaction = 0;
+    }
+
+    /**
+     * Renomme le snapshot et le journal en {@code <nom>.failed-<date>} après une relecture
+     * ratée : la compaction suivante ne peut plus les écraser.
+     */
+    public synchronized List<Path> quarantine() throws IOException {
+        closeWriter();
+        String suffix = ".failed-" + System.currentTimeMillis();
+        List<Path> moved = new ArrayList<>();
+        for (Path path : List.of(snapshotPath, jsonSnapshotPath, journalPath)) {
+            if (!Files.exists(path)) continue;
+            Path target = path.resolveSibling(path.getFileName() + suffix);
+            Files.move(path, target);
+            moved.add(target);
+        }
+        recordsSinceCompaction = 0;
+        return moved;
+    }
+
+    public synchronized void close() {
+        try {
+            closeWriter();
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.error("Erreur lors de la fermeture du journal CoinFlip", e);
+        }
+    }
+
+    private void closeWriter() throws IOException {
+        if (writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.floye.coinflip;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Statistiques par joueur et par devise (victoires, défaites, gain net, volume misé, taxe
+ * payée), mises à jour à chaque résolution, et classements tenus à jour au fil de l'eau.
+ * <p>
+ * Chaque classement garde les meilleurs joueurs dans un ensemble trié borné (deux fois la
+ * taille affichée) et un plafond : le meilleur score laissé dehors. Un membre au-dessus du
+ * plafond est forcément bien classé ; une requête lit donc directement l'ensemble. Un gain
+ * net peut baisser : si trop de membres passent sous le plafond, le classement est
+ * reconstruit depuis les statistiques en mémoire, jamais depuis l'historique.
+ * <p>
+ * Les statistiques sont écrites avec le snapshot du carnet et notent combien d'enregistrements
+ * de {@link CoinFlipHistory} elles couvrent : au démarrage, seuls les flips suivants sont relus.
+ */
+public class CoinFlipLeaderboards implements CoinFlipPersistence.Store {
+    private static final int MAGIC = 0x43465354; // "CFST"
+    private static final byte VERSION = 1;
+
+    public enum Metric {
+        WINS,
+        PROFIT,
+        VOLUME;
+
+        double score(Stats stats) {
+            return switch (this) {
+                case WINS -> stats.wins;
+                case PROFIT -> stats.profit;
+                case VOLUME -> stats.volume;
+            };
+        }
+
+        public static Metric byName(String name) {
+            for (Metric metric : values()) {
+                if (metric.name().equalsIgnoreCase(name)) {
+                    return metric;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Vue figée des statistiques d'un joueur dans une devise
+    public record PlayerStats(UUID player, String currency, long wins, long losses, double profit, long volume, double tax) {
+    }
+
+    private static final class Stats {
+        final UUID player;
+        long wins;
+        long losses;
+        double profit;
+        long volume;
+        double tax;
+
+        Stats(UUID player) {
+            this.player = player;
+        }
+
+        PlayerStats view(String currency) {
+            return new PlayerStats(player, currency, wins, losses, profit, volume, tax);
+        }
+    }
+
+    private static final class Board {
+        final Metric metric;
+        final TreeSet<Stats> members;
+        double ceiling = Double.NEGATIVE_INFINITY;
+
+        Board(Metric metric) {
+            this.metric = metric;
+            // Le score est lu sur l'objet : un membre doit être retiré avant d'être modifié
+            this.members = new TreeSet<>(Comparator.<Stats>comparingDouble(stats -> -metric.score(stats))
+                    .thenComparing(stats -> stats.player));
+        }
+
+        void offer(Stats stats, int capacity) {
+            if (members.size() < capacity || members.comparator().compare(stats, members.last()) < 0) {
+                members.add(stats);
+                if (members.size() > capacity) {
+                    ceiling = Math.max(ceiling, metric.score(members.pollLast()));
+                }
+            } else {
+                ceiling = Math.max(ceiling, metric.score(stats));
+            }
+        }
+    }
+
+    private static final class Currency {
+        final Map<UUID, Stats> players = new HashMap<>();
+        final Map<Metric, Board> boards = new EnumMap<>(Metric.class);
+
+        Currency() {
+            for (Metric metric : Metric.values()) {
+                boards.put(metric, new Board(metric));
+            }
+        }
+    }
+
+    private final Path path;
+    // Protégés par this
+    private final Map<String, Currency> currencies = new HashMap<>();
+    private long covered = 0; // Enregistrements de l'historique déjà comptés
+    private boolean dirty = false;
+
+    public CoinFlipLeaderboards(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Recharge les statistiques écrites avec le dernier snapshot, puis rattrape les flips
+     * enregistrés dans l'historique depuis. Sans fichier (première version avec classements),
+     * tout l'historique est relu une fois.
+     */
+    public synchronized void load(CoinFlipHistory history) {
+        if (Files.exists(path)) {
+            try {
+                read(Files.readAllBytes(path));
+            } catch (IOException e) {
+                CoinFlipMod.LOGGER.error("Statistiques CoinFlip illisibles, reconstruction depuis l'historique", e);
+                currencies.clear();
+                covered = 0;
+            }
+        }
+
+        long before = covered;
+        history.replay(covered, entry -> record(entry, true));
+        if (covered > before) {
+            dirty = true;
+        }
+        CoinFlipMod.LOGGER.info("Statistiques CoinFlip : {} flips comptés, {} rattrapés depuis l'historique", covered, covered - before);
+    }
+
+    /**
+     * Compte un flip résolu. {@code logged} indique s'il a été écrit dans l'historique :
+     * sinon il ne doit pas avancer la position de rattrapage.
+     */
+    public synchronized void record(CoinFlipHistory.Entry entry, boolean logged) {
+        Currency currency = currencies.computeIfAbsent(entry.currency(), key -> new Currency());
+        UUID winner = entry.creatorWon() ? entry.creator() : entry.participant();
+        UUID loser = entry.creatorWon() ? entry.participant() : entry.creator();
+
+        update(currency, winner, stats -> {
+            stats.wins++;
+            stats.profit += entry.payout() - entry.amount();
+            stats.volume += entry.amount();
+            stats.tax += entry.tax();
+        });
+        update(currency, loser, stats -> {
+            stats.losses++;
+            stats.profit -= entry.amount();
+            stats.volume += entry.amount();
+        });
+
+        if (logged) {
+            covered++;
+        }
+        dirty = true;
+    }
+
+    private void update(Currency currency, UUID player, Consumer<Stats> change) {
+        Stats stats = currency.players.computeIfAbsent(player, Stats::new);
+        for (Board board : currency.boards.values()) {
+            board.members.remove(stats);
+        }
+        change.accept(stats);
+        int capacity = capacity();
+        for (Board board : currency.boards.values()) {
+            board.offer(stats, capacity);
+        }
+    }
+
+    /**
+     * Les {@code limit} premiers du classement, en O(limit) tant que le classement borné suffit.
+     */
+    public synchronized List<PlayerStats> top(Metric metric, String currencyKey, int limit) {
+        Currency currency = currencies.get(currencyKey);
+        if (currency == null || limit <= 0) return List.of();
+
+        Board board = currency.boards.get(metric);
+        List<PlayerStats> result = collect(board, currencyKey, limit);
+        if (result == null) {
+            rebuild(currency, board);
+            result = collect(board, currencyKey, limit);
+        }
+        return result == null ? List.of() : result;
+    }
+
+    // null si les membres sûrs (au-dessus du plafond) ne suffisent pas à remplir la page
+    private List<PlayerStats> collect(Board board, String currencyKey, int limit) {
+        List<PlayerStats> result = new ArrayList<>(limit);
+        for (Stats stats : board.members) {
+            if (result.size() == limit) break;
+            if (board.metric.score(stats) < board.ceiling) return null;
+            result.add(stats.view(currencyKey));
+        }
+        if (result.size() < limit && board.ceiling != Double.NEGATIVE_INFINITY) {
+            return null;
+        }
+        return result;
+    }
+
+    private void rebuild(Currency currency, Board board) {
+        board.members.clear();
+        board.ceiling = Double.NEGATIVE_INFINITY;
+        int capacity = capacity();
+        for (Stats stats : currency.players.values()) {
+            board.offer(stats, capacity);
+        }
+    }
+
+    public synchronized List<PlayerStats> stats(UUID player) {
+        List<PlayerStats> result = new ArrayList<>();
+        currencies.forEach((currencyKey, currency) -> {
+            Stats stats = currency.players.get(player);
+            if (stats != null) {
+                result.add(stats.view(currencyKey));
+            }
+        });
+        result.sort(Comparator.comparing(PlayerStats::currency));
+        return result;
+    }
+
+    private static int capacity() {
+        return Math.max(1, CoinFlipMod.config.leaderboardSize) * 2;
+    }
+
+    // Le rattrapage depuis l'historique rend une écriture à chaque passage inutile
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void compact() throws IOException {
+        byte[] data;
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+            data = write();
+        }
+        CoinFlipPersistence.writeAtomically(path, data);
+    }
+
+    private byte[] write() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(covered);
+        out.writeInt(currencies.size());
+        for (Map.Entry<String, Currency> currency : currencies.entrySet()) {
+            out.writeUTF(currency.getKey());
+            out.writeInt(currency.getValue().players.size());
+            for (Stats stats : currency.getValue().players.values()) {
+                out.writeLong(stats.player.getMostSignificantBits());
+                out.writeLong(stats.player.getLeastSignificantBits());
+                out.writeLong(stats.wins);
+                out.writeLong(stats.losses);
+                out.writeDouble(stats.profit);
+                out.writeLong(stats.volume);
+                out.writeDouble(stats.tax);
+            }
+        }
+        out.flush();
+
+        byte[] payload = bytes.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteArrayOutputStream file = new ByteArrayOutputStream(payload.length + 9);
+        DataOutputStream header = new DataOutputStream(file);
+        header.writeInt(MAGIC);
+        header.writeByte(VERSION);
+        header.write(payload);
+        header.writeInt((int) crc.getValue());
+        header.flush();
+        return file.toByteArray();
+    }
+
+    private void read(byte[] data) throws IOException {
+        if (data.length < 9) {
+            throw new IOException("Fichier de statistiques CoinFlip tronqué : " + path);
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        if (in.readInt() != MAGIC || in.readUnsignedByte() != VERSION) {
+            throw new IOException("Fichier de statistiques CoinFlip inconnu : " + path);
+        }
+        CRC32 crc = new CRC32();
+        crc.update(data, 5, data.length - 9);
+        DataInputStream tail = new DataInputStream(new ByteArrayInputStream(data, data.length - 4, 4));
+        if ((int) crc.getValue() != tail.readInt()) {
+            throw new IOException("Fichier de statistiques CoinFlip corrompu : " + path);
+        }
+
+        covered = in.readLong();
+        int currencyCount = in.readInt();
+        int capacity = capacity();
+        for (int i = 0; i < currencyCount; i++) {
+            Currency currency = currencies.computeIfAbsent(in.readUTF(), key -> new Currency());
+            int playerCount = in.readInt();
+            for (int j = 0; j < playerCount; j++) {
+                Stats stats = new Stats(new UUID(in.readLong(), in.readLong()));
+                stats.wins = in.readLong();
+                stats.losses = in.readLong();
+                stats.profit = in.readDouble();
+                stats.volume = in.readLong();
+                stats.tax = in.readDouble();
+                currency.players.put(stats.player, stats);
+                for (Board board : currency.boards.values()) {
+                    board.offer(stats, capacity);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.floye.coinflip;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * Registre des lobbies ouverts. Le manager y publie les changements du carnet depuis
+ * n'importe quel thread ; ils sont regroupés et poussés aux vues une fois par tick.
+ */
+public class CoinFlipLobby {
+    public enum Change {
+        ADDED,
+        REMOVED,
+        CLAIMED,  // Le flip n'est plus joignable (réservé, en cours d'annulation)
+        RELEASED  // Le flip redevient joignable
+    }
+
+    public record Delta(Change change, CoinFlipManager.CoinFlip flip) {
+    }
+
+    private final Queue<Delta> pending = new ConcurrentLinkedQueue<>();
+    private final Set<CoinFlipGui> views = ConcurrentHashMap.newKeySet();
+
+    public void publish(Change change, CoinFlipManager.CoinFlip flip) {
+        // Personne ne regarde : inutile d'accumuler
+        if (views.isEmpty()) return;
+        pending.add(new Delta(change, flip));
+    }
+
+    public void subscribe(CoinFlipGui view) {
+        views.add(view);
+    }
+
+    public void unsubscribe(CoinFlipGui view) {
+        views.remove(view);
+    }
+
+    public int size() {
+        return views.size();
+    }
+
+    // Thread serveur : un seul lot de changements par vue et par tick
+    public void tick() {
+        if (pending.isEmpty()) return;
+
+        List<Delta> batch = new ArrayList<>();
+        Delta delta;
+        while ((delta = pending.poll()) != null) {
+            batch.add(delta);
+        }
+
+        for (CoinFlipGui view : views) {
+            view.onFlipsChanged(batch);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.floye.coinflip;
 
+import com.floye.coinflip.CoinFlipMessages.Args;
+import com.floye.coinflip.CoinFlipMessages.MessageKey;
+import com.floye.coinflip.CoinFlipMessages.Placeholder;
 import com.floye.coinflip.utils.EconomyHandler;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import net.impactdev.impactor.api.economy.accounts.Account;
 import net.fabricmc.loader.api.FabricLoader;
 import net.minecraft.server.MinecraftServer;
 import net.minecraft.server.network.ServerPlayerEntity;
@@ -10,25 +12,60 @@ import net.minecraft.text.Text;
 import net.minecraft.util.Formatting;
 
 import java.io.IOException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 public class CoinFlipManager {
     public static class CoinFlip {
+        /**
+         * Cycle de vie d'un flip. Toute transition passe par un CAS : le premier joueur
+         * qui réserve le flip l'emporte avant qu'un seul appel économique ne soit fait.
+         */
+        public enum State {
+            OPEN,       // En attente d'un participant
+            RESERVED,   // Réservé par un participant, retrait de sa mise en cours
+            SETTLING,   // Mises prélevées, tirage et paiement en cours
+            RESOLVED,
+            CANCELLED,
+            EXPIRED
+        }
+
         public final UUID creator;
-        public UUID participant;
+        private volatile UUID participant;
         public final int amount;
         public final String currency;
         public final UUID id;
+        public final long createdAt;
+        public final long expiresAt;
+        public final String node; // Serveur propriétaire pour une copie répliquée, null pour un flip local
+        private final AtomicReference<State> state = new AtomicReference<>(State.OPEN);
 
         public CoinFlip(UUID creator, int amount, String currency) {
+            this(UUID.randomUUID(), creator, amount, currency);
+        }
+
+        public CoinFlip(UUID id, UUID creator, int amount, String currency) {
+            this(id, creator, amount, currency, null, System.currentTimeMillis(),
+                    System.currentTimeMillis() + TimeUnit.MINUTES.toMillis(CoinFlipMod.config.flipTimeoutMinutes));
+        }
+
+        public CoinFlip(UUID id, UUID creator, int amount, String currency, String node, long createdAt, long expiresAt) {
             this.creator = creator;
             this.amount = amount;
             this.currency = currency;
             this.participant = null;
-            this.id = UUID.randomUUID();
+            this.id = id;
+            this.node = node;
+            this.createdAt = createdAt;
+            this.expiresAt = expiresAt;
+        }
+
+        // Copie d'un flip d'un autre serveur : mises, expiration et paiement y sont gérés
+        public boolean isRemote() {
+            return node != null;
         }
 
         public UUID getCreator() {
@@ -46,53 +83,315 @@ public class CoinFlipManager {
         public UUID getId() {
             return id;
         }
+
+        public State getState() {
+            return state.get();
+        }
+
+        public boolean isOpen() {
+            return state.get() == State.OPEN;
+        }
+
+        public boolean transition(State from, State to) {
+            return state.compareAndSet(from, to);
+        }
+
+        // Réserve le flip pour ce joueur ; échoue immédiatement si quelqu'un l'a déjà pris
+        public boolean tryReserve(UUID joiner) {
+            if (!state.compareAndSet(State.OPEN, State.RESERVED)) {
+                return false;
+            }
+            participant = joiner;
+            return true;
+        }
+
+        // Annule une réservation dont le retrait a échoué
+        public void release() {
+            if (state.get() == State.RESERVED) {
+                participant = null;
+                state.compareAndSet(State.RESERVED, State.OPEN);
+            }
+        }
     }
 
-    public static final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
-    private final Map<UUID, List<CoinFlip>> activeFlips = new HashMap<>();
-    private final Map<UUID, List<CoinFlip>> pendingRefunds = new HashMap<>();
+    private static final long TICKS_PER_MINUTE = 20 * 60;
+    // Délai avant de revérifier un flip expiré pendant qu'un participant le paie
+    private static final long RESERVED_RECHECK_TICKS = 100;
+    // Purge du cache des comptes une fois par minute
+    private static final int ACCOUNT_SWEEP_TICKS = 1200;
+    // Remboursements de rejeu versés à la file de règlement par lots de cette taille
+    private static final int REFUND_BATCH_SIZE = 1024;
+    // Flips compatibles essayés par une demande de file avant de créer le sien
+    private static final int QUEUE_MATCH_ATTEMPTS = 3;
+    // Délai accordé au propriétaire d'une copie distante après son expiration prévue
+    private static final long REMOTE_EXPIRY_GRACE_TICKS = 30 * 20;
+    private final CoinFlipBook activeFlips = new CoinFlipBook();
+    // Dernière demande de file de chaque case (devise, montant), retirée une fois terminée
+    private final ConcurrentMap<QueueKey, CompletableFuture<QueueResult>> queueTails = new ConcurrentHashMap<>();
+    // Joueurs remboursés après un crash, prévenus à leur prochaine connexion
+    private final Set<UUID> pendingRefundNotices = ConcurrentHashMap.newKeySet();
     private final Map<UUID, CoinFlipAnimationGui> activeAnimations = new ConcurrentHashMap<>();
-    private static final Path SAVE_DIR = FabricLoader.getInstance().getConfigDir().resolve("coinflip");
-    private static final Path SAVE_PATH = SAVE_DIR.resolve("coinflip_data.json");
-    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private final CoinFlipAnimationEngine animationEngine = new CoinFlipAnimationEngine();
+    private final CoinFlipExpiryWheel expiryWheel = new CoinFlipExpiryWheel();
+    private final CoinFlipLobby lobby = new CoinFlipLobby();
+    private long ticks = 0; // Thread serveur uniquement
+    private static final Path SAVE_DIR = CoinFlipConfig.dataDir();
+    private static final Path SAVE_PATH = SAVE_DIR.resolve("coinflip_data.bin");
+    private static final Path JSON_SAVE_PATH = SAVE_DIR.resolve("coinflip_data.json");
+    private static final Path EXPORT_PATH = SAVE_DIR.resolve("coinflip_export.json");
+    private static final Path JOURNAL_PATH = SAVE_DIR.resolve("coinflip_journal.jsonl");
+    private static final Path SETTLEMENT_PATH = SAVE_DIR.resolve("coinflip_settlement.json");
+    private static final Path MUTED_PATH = SAVE_DIR.resolve("coinflip_muted.json");
+    private static final Path FAIRNESS_PATH = SAVE_DIR.resolve("coinflip_fairness.json");
+    private static final Path DRAWS_PATH = SAVE_DIR.resolve("coinflip_draws.jsonl");
+    private static final Path HISTORY_DIR = SAVE_DIR.resolve("history");
+    private static final Path STATS_PATH = SAVE_DIR.resolve("coinflip_stats.bin");
+    private final CoinFlipJournal journal = new CoinFlipJournal(SAVE_PATH, JSON_SAVE_PATH, JOURNAL_PATH);
+    private final CoinFlipPersistence persistence = new CoinFlipPersistence(journal, this::getActiveFlips);
+    private final CoinFlipSettlement settlement = new CoinFlipSettlement(SETTLEMENT_PATH);
+    private final CoinFlipBroadcaster broadcaster = new CoinFlipBroadcaster(MUTED_PATH);
+    private final CoinFlipFairness fairness = new CoinFlipFairness(FAIRNESS_PATH, DRAWS_PATH);
+    private final CoinFlipHistory history = new CoinFlipHistory(HISTORY_DIR);
+    private final CoinFlipLeaderboards leaderboards = new CoinFlipLeaderboards(STATS_PATH);
+    private final CoinFlipReplication replication = new CoinFlipReplication(this, CoinFlipMod.config);
+
+    public CoinFlipManager() {
+        persistence.attach(settlement);
+        persistence.attach(broadcaster);
+        persistence.attach(fairness);
+        persistence.attach(history);
+        persistence.attach(leaderboards);
+
+        CoinFlipMod.metrics.registerGauge("open_flips", activeFlips::size);
+        CoinFlipMod.metrics.registerGauge("pending_expiries", expiryWheel::size);
+        CoinFlipMod.metrics.registerGauge("active_animations", activeAnimations::size);
+        CoinFlipMod.metrics.registerGauge("pending_refunds", settlement::size);
+        CoinFlipMod.metrics.registerGauge("open_lobbies", lobby::size);
 
-    public void saveFlips() {
         try {
-            List<CoinFlip> allFlips = getActiveFlips().stream().toList();
-            String json = GSON.toJson(allFlips);
-            Files.writeString(SAVE_PATH, json);
+            broadcaster.load();
         } catch (IOException e) {
-            CoinFlipMod.LOGGER.error("Erreur lors de la sauvegarde des CoinFlips", e);
+            CoinFlipMod.LOGGER.error("Erreur lors du chargement des annonces coupées", e);
         }
     }
 
+    // Compaction : le snapshot complet sera réécrit au prochain passage du writer
+    public void saveFlips() {
+        persistence.markDirty();
+    }
+
+    // Export JSON des flips ouverts, indépendant du format de snapshot choisi
+    public Path exportFlips() throws IOException {
+        CoinFlipJournal.exportJson(EXPORT_PATH, getActiveFlips());
+        return EXPORT_PATH;
+    }
+
+    // Journalise un événement ; l'écriture disque se fait sur le thread de persistance
+    private void record(CoinFlipJournal.EventType type, CoinFlip flip) {
+        persistence.record(CoinFlipJournal.Entry.of(type, flip));
+        CoinFlipMod.metrics.increment(switch (type) {
+            case CREATED -> CoinFlipMetrics.Counter.CREATED;
+            case JOINED -> CoinFlipMetrics.Counter.JOINED;
+            case RESOLVED -> CoinFlipMetrics.Counter.RESOLVED;
+            case CANCELLED -> CoinFlipMetrics.Counter.CANCELLED;
+            case REFUNDED -> CoinFlipMetrics.Counter.REFUNDED;
+        });
+    }
+
+    /**
+     * Au démarrage : recharge les crédits non appliqués, puis rembourse les flips restés ouverts
+     * dans le journal. Le snapshot est lu en flux et les remboursements sont regroupés par joueur
+     * et par devise ; ils ne rejoignent la file qu'une fois la relecture terminée sans erreur.
+     * Les crédits sont écrits sur disque avant que le journal soit vidé.
+     * <p>
+     * Si la relecture échoue, rien n'est versé : le snapshot et le journal sont mis de côté
+     * ({@code .failed-<date>}) pour ne pas être écrasés par la prochaine compaction. Les remettre
+     * en place avant le redémarrage suivant relance la récupération.
+     */
     public void loadAndRefundFlips() {
-        if (!Files.exists(SAVE_PATH)) return;
+        // Historique illisible : on continue, les remboursements passent avant
+        try {
+            history.load();
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.error("Erreur lors du chargement de l'historique CoinFlip", e);
+        }
+        leaderboards.load(history);
 
+        CoinFlipSettlement.RefundBatch refunds = settlement.refundBatch(REFUND_BATCH_SIZE);
+        Set<UUID> notices = new HashSet<>();
+        int[] refunded = {0};
         try {
-            String json = Files.readString(SAVE_PATH);
-            CoinFlip[] flips = GSON.fromJson(json, CoinFlip[].class);
+            fairness.load();
+            settlement.load();
+            // Flips déjà remboursés ou payés dans un crédit en attente : le journal n'a pas eu le temps de le noter
+            Set<UUID> covered = settlement.coveredFlips();
+            // Mode ledger : mises encore attachées à un flip, rendues plus bas si le flip a disparu
+            Map<UUID, List<CoinFlipSettlement.Stake>> stakes = new HashMap<>();
+            for (CoinFlipSettlement.Stake stake : settlement.stakes()) {
+                stakes.computeIfAbsent(stake.flipId(), id -> new ArrayList<>()).add(stake);
+            }
 
-            if (flips != null) {
-                for (CoinFlip flip : flips) {
-                    if (flip.participant == null) {
-                        pendingRefunds.computeIfAbsent(flip.creator, uuid -> new ArrayList<>()).add(flip);
-                    }
+            journal.replay(entry -> {
+                stakes.remove(entry.id);
+                if (covered.contains(entry.id)) return;
+
+                refunds.add(entry.creator, entry.currency, entry.amount, entry.id);
+                notices.add(entry.creator);
+                refunded[0]++;
+
+                // Flip rejoint mais jamais payé : le participant récupère aussi sa mise
+                if (entry.participant != null) {
+                    refunds.add(entry.participant, entry.currency, entry.amount, entry.id);
+                    notices.add(entry.participant);
                 }
+            });
+
+            // Mise débitée pour un flip que ni le journal ni un crédit ne connaît : on la rend
+            stakes.forEach((flipId, orphans) -> {
+                if (covered.contains(flipId)) return;
+                for (CoinFlipSettlement.Stake stake : orphans) {
+                    refunds.add(stake.player(), stake.currency(), stake.amount(), flipId);
+                    notices.add(stake.player());
+                    refunded[0]++;
+                }
+            });
+        } catch (IOException | RuntimeException e) {
+            refunds.discard();
+            CoinFlipMod.LOGGER.error("Erreur lors du chargement des CoinFlips : aucun remboursement versé", e);
+            try {
+                List<Path> kept = journal.quarantine();
+                CoinFlipMod.LOGGER.error("Fichiers CoinFlip mis de côté : {}. Les remettre en place avant le prochain redémarrage pour relancer la récupération", kept);
+            } catch (IOException quarantineError) {
+                CoinFlipMod.LOGGER.error("Impossible de mettre de côté le snapshot et le journal CoinFlip", quarantineError);
             }
+            return;
+        }
 
-            Files.deleteIfExists(SAVE_PATH);
+        refunds.commit();
+        settlement.clearStakes();
+        pendingRefundNotices.addAll(notices);
+        for (int i = 0; i < refunded[0]; i++) {
+            CoinFlipMod.metrics.increment(CoinFlipMetrics.Counter.REFUNDED);
+        }
+        try {
+            settlement.flush();
+            journal.clear();
         } catch (IOException e) {
-            CoinFlipMod.LOGGER.error("Erreur lors du chargement des CoinFlips", e);
+            // Crédits pas encore sur disque : le journal est gardé, le writer réessaiera avant la prochaine compaction
+            CoinFlipMod.LOGGER.error("Erreur lors de l'enregistrement des remboursements CoinFlip", e);
         }
     }
 
+    // Vue sans copie sur le carnet, sûre à parcourir depuis n'importe quel thread
     public Collection<CoinFlip> getActiveFlips() {
-        List<CoinFlip> allFlips = new ArrayList<>();
-        for (List<CoinFlip> flips : activeFlips.values()) {
-            allFlips.addAll(flips);
+        return activeFlips.all();
+    }
+
+    public CoinFlipBook getFlipBook() {
+        return activeFlips;
+    }
+
+    public CoinFlipAnimationEngine getAnimationEngine() {
+        return animationEngine;
+    }
+
+    public CoinFlipSettlement getSettlement() {
+        return settlement;
+    }
+
+    public CoinFlipBroadcaster getBroadcaster() {
+        return broadcaster;
+    }
+
+    public CoinFlipFairness getFairness() {
+        return fairness;
+    }
+
+    public CoinFlipHistory getHistory() {
+        return history;
+    }
+
+    public CoinFlipLeaderboards getLeaderboards() {
+        return leaderboards;
+    }
+
+    public CoinFlipReplication getReplication() {
+        return replication;
+    }
+
+    // --- Copies des flips des autres serveurs, appelées par la réplication sur le thread serveur ---
+
+    void addRemoteFlip(CoinFlip flip) {
+        if (!activeFlips.add(flip)) return;
+
+        lobby.publish(CoinFlipLobby.Change.ADDED, flip);
+        // Filet de sécurité si le propriétaire disparaît sans publier le retrait
+        long remainingTicks = Math.max(0, flip.expiresAt - System.currentTimeMillis()) / 50;
+        expiryWheel.schedule(flip, remainingTicks + REMOTE_EXPIRY_GRACE_TICKS);
+    }
+
+    void removeRemoteFlip(UUID flipId) {
+        CoinFlip flip = activeFlips.get(flipId);
+        if (flip != null && flip.isRemote()) {
+            removeFlip(flip);
+        }
+    }
+
+    void dropRemoteFlips(String node) {
+        for (CoinFlip flip : activeFlips.all()) {
+            if (node.equals(flip.node)) {
+                removeFlip(flip);
+            }
+        }
+    }
+
+    // Tirage d'un autre serveur : on anime ceux de ses joueurs qui sont connectés ici
+    void showRemoteResult(MinecraftServer server, CoinFlip flip, UUID joiner, UUID winner) {
+        if (server == null || joiner == null || winner == null) return;
+
+        for (UUID playerId : List.of(flip.creator, joiner)) {
+            ServerPlayerEntity player = server.getPlayerManager().getPlayer(playerId);
+            if (player != null) {
+                addActiveAnimation(playerId, new CoinFlipAnimationGui(player, flip, playerId.equals(winner)));
+            }
+        }
+    }
+
+    /**
+     * Appelé à la fin de chaque tick serveur. {@code server} peut être null hors jeu
+     * (benchmarks, simulation) : seuls les messages aux joueurs sont alors sautés.
+     */
+    public void tick(MinecraftServer server) {
+        ticks++;
+        List<CoinFlip> expired = expiryWheel.advance();
+        if (!expired.isEmpty()) {
+            expireFlips(server, expired);
+        }
+        replication.tick(server);
+        settlement.tick();
+        broadcaster.tick(server);
+        lobby.tick();
+        animationEngine.tick();
+
+        int metricsInterval = CoinFlipMod.config.metricsLogIntervalMinutes;
+        if (metricsInterval > 0 && ticks % (metricsInterval * TICKS_PER_MINUTE) == 0) {
+            CoinFlipMod.metrics.report().forEach(line -> CoinFlipMod.LOGGER.info("[stats] {}", line));
+        }
+
+        if (ticks % ACCOUNT_SWEEP_TICKS == 0) {
+            EconomyHandler.accounts().sweep(CoinFlipMod.config.accountCacheTtlMinutes * 60_000L,
+                    CoinFlipMod.config.accountCacheMaxPlayers);
         }
-        return allFlips;
+    }
+
+    public CoinFlipLobby getLobby() {
+        return lobby;
+    }
+
+    // Rend le flip de nouveau joignable et prévient les lobbies ouverts
+    private void release(CoinFlip flip) {
+        flip.release();
+        lobby.publish(CoinFlipLobby.Change.RELEASED, flip);
     }
 
     public boolean hasActiveAnimation(UUID playerId) {
@@ -111,143 +410,210 @@ public class CoinFlipManager {
         CoinFlipMod.LOGGER.debug("Animation TERMINÉE pour joueur {}", playerId); // Log debug
     }
 
-    public CompletableFuture<Boolean> createFlip(ServerPlayerEntity creator, int amount, String currencyKey) {
-        if (amount <= 0) return CompletableFuture.completedFuture(false);
+    public enum QueueResult {
+        MATCHED, // Apparié à un flip existant, tirage lancé
+        WAITING, // Aucun flip compatible : un flip a été créé et attend le prochain joueur
+        FAILED
+    }
 
-        UUID creatorId = creator.getUuid();
-        List<CoinFlip> playerFlips = activeFlips.getOrDefault(creatorId, new ArrayList<>());
+    private record QueueKey(String currency, int amount) {
+    }
+
+    /**
+     * Mode file : rejoint le plus ancien flip ouvert de même devise et même montant,
+     * sinon en crée un que la prochaine demande compatible rejoindra aussitôt.
+     * Les demandes d'une même case passent l'une après l'autre : deux demandes proches ne
+     * peuvent pas toutes deux manquer l'autre et laisser deux flips compatibles en attente.
+     */
+    public CompletableFuture<QueueResult> queueFlip(ServerPlayerEntity player, int amount, String currencyKey) {
+        return inQueueOrder(currencyKey, amount, () -> queueFlip(player.getUuid(), amount, currencyKey, QUEUE_MATCH_ATTEMPTS)
+                .thenCompose(matched -> matched
+                        ? CompletableFuture.completedFuture(QueueResult.MATCHED)
+                        : createFlip(player, amount, currencyKey).thenApply(created -> created ? QueueResult.WAITING : QueueResult.FAILED)));
+    }
+
+    // Sans entité joueur : utilisée aussi par les benchmarks et la simulation
+    public CompletableFuture<QueueResult> queueFlip(UUID playerId, String playerName, int amount, String currencyKey) {
+        return inQueueOrder(currencyKey, amount, () -> queueFlip(playerId, amount, currencyKey, QUEUE_MATCH_ATTEMPTS)
+                .thenCompose(matched -> matched
+                        ? CompletableFuture.completedFuture(QueueResult.MATCHED)
+                        : createFlip(playerId, playerName, amount, currencyKey).thenApply(created -> created ? QueueResult.WAITING : QueueResult.FAILED)));
+    }
 
-        if (playerFlips.size() >= CoinFlipMod.config.maxCoinFlipsPerPlayer) {
-            String message = CoinFlipMod.config.getMessage("alreadyMaxFlips", Map.of(
-                    "max", String.valueOf(CoinFlipMod.config.maxCoinFlipsPerPlayer)
-            ));
-            creator.sendMessage(Text.literal(message));
+    // Lance la demande une fois la précédente de la même case terminée, quel que soit son résultat
+    private CompletableFuture<QueueResult> inQueueOrder(String currencyKey, int amount, Supplier<CompletableFuture<QueueResult>> request) {
+        QueueKey key = new QueueKey(currencyKey, amount);
+        CompletableFuture<QueueResult> result = new CompletableFuture<>();
+        CompletableFuture<QueueResult> previous = queueTails.put(key, result);
+        CompletableFuture<?> turn = previous == null
+                ? CompletableFuture.completedFuture(null)
+                : previous.handle((ignored, error) -> null);
+
+        turn.thenCompose(ignored -> request.get()).whenComplete((queued, error) -> {
+            queueTails.remove(key, result);
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(queued);
+            }
+        });
+        return result;
+    }
+
+    // Un flip perdu au profit d'un autre joueur (réservation concurrente) : on tente le suivant
+    private CompletableFuture<Boolean> queueFlip(UUID playerId, int amount, String currencyKey, int attempts) {
+        if (amount <= 0 || attempts <= 0) return CompletableFuture.completedFuture(false);
+
+        CoinFlip match = activeFlips.oldestMatch(currencyKey, amount,
+                flip -> !flip.creator.equals(playerId) && !hasActiveAnimation(flip.creator));
+        if (match == null) return CompletableFuture.completedFuture(false);
+
+        return joinFlip(playerId, match.creator, match.id).thenCompose(joined -> {
+            if (joined) {
+                CoinFlipMod.metrics.increment(CoinFlipMetrics.Counter.QUEUE_MATCHED);
+                return CompletableFuture.completedFuture(true);
+            }
+            return queueFlip(playerId, amount, currencyKey, attempts - 1);
+        });
+    }
+
+    public CompletableFuture<Boolean> createFlip(ServerPlayerEntity creator, int amount, String currencyKey) {
+        if (activeFlips.countByCreator(creator.getUuid()) >= CoinFlipMod.config.maxCoinFlipsPerPlayer) {
+            creator.sendMessage(CoinFlipMod.config.getText(MessageKey.ALREADY_MAX_FLIPS,
+                    Args.of(Placeholder.MAX, String.valueOf(CoinFlipMod.config.maxCoinFlipsPerPlayer))));
+            return CompletableFuture.completedFuture(false);
+        }
+        return createFlip(creator.getUuid(), creator.getName().getString(), amount, currencyKey);
+    }
+
+    // Création sans entité joueur : utilisée aussi par les benchmarks et la simulation
+    public CompletableFuture<Boolean> createFlip(UUID creatorId, String creatorName, int amount, String currencyKey) {
+        if (amount <= 0) return CompletableFuture.completedFuture(false);
+        if (activeFlips.countByCreator(creatorId) >= CoinFlipMod.config.maxCoinFlipsPerPlayer) {
             return CompletableFuture.completedFuture(false);
         }
 
         return EconomyHandler.getAccount(creatorId, currencyKey)
                 .thenApply(creatorAcc -> {
-                    if (creatorAcc != null && EconomyHandler.getBalance(creatorAcc) >= amount) {
-                        if (EconomyHandler.remove(creatorAcc, amount)) {
-                            CoinFlip newFlip = new CoinFlip(creatorId, amount, currencyKey);
-                            playerFlips.add(newFlip);
-                            activeFlips.put(creatorId, playerFlips);
-
-                            scheduler.schedule(() -> {
-                                if (newFlip.participant == null) {
-                                    cancelFlipAfterTimeout(newFlip);
-                                }
-                            }, CoinFlipMod.config.flipTimeoutMinutes, TimeUnit.MINUTES);
-
-                            CoinFlipMod.LOGGER.info("creation coinflip");
-
-                            broadcastFlipCreation(creator, newFlip);
-                            saveFlips();
-                            return true;
-                        }
+                    CoinFlip newFlip = new CoinFlip(creatorId, amount, currencyKey);
+                    if (creatorAcc == null || !takeStake(creatorAcc, creatorId, newFlip)) {
+                        return false;
                     }
-                    return false;
+                    activeFlips.add(newFlip);
+                    lobby.publish(CoinFlipLobby.Change.ADDED, newFlip);
+
+                    expiryWheel.schedule(newFlip, CoinFlipMod.config.flipTimeoutMinutes * TICKS_PER_MINUTE);
+
+                    broadcaster.announce(creatorName, newFlip);
+                    replication.published(newFlip);
+                    record(CoinFlipJournal.EventType.CREATED, newFlip);
+                    return true;
                 });
     }
 
-    private void broadcastFlipCreation(ServerPlayerEntity creator, CoinFlip flip) {
-        CoinFlipMod.LOGGER.info("Début de broadcastFlipCreation");
-        String playerName = creator.getName().getString();
-        CoinFlipMod.LOGGER.info("1");
-        String amountString = String.format("%.2f",(double)flip.amount);
-        CoinFlipMod.LOGGER.info("2");
-        String currencyAlias = CoinFlipMod.config.getCurrencyAliasFromKey(flip.currency);
-
-        String message = CoinFlipMod.config.getMessage("broadcastFlipCreation", Map.of(
-                "player", playerName,
-                "amount", amountString,
-                "currency", currencyAlias
-        ));
-        CoinFlipMod.LOGGER.info("Message généré: {}", message);
-
-        MinecraftServer server = creator.getServer();
-        CoinFlipMod.LOGGER.info("Serveur: {}", server);
-        if (server != null) {
-            CoinFlipMod.LOGGER.info("Envoi du message à tous les joueurs");
-            server.getPlayerManager().getPlayerList().forEach(player -> {
-                player.sendMessage(Text.literal(message));
-            });
-        } else {
-            CoinFlipMod.LOGGER.info("Le serveur est null, impossible d'envoyer le message");
+    // Prélève la mise : dans le ledger local si activé, sinon directement dans Impactor.
+    // Jamais de ledger avec la réplication, même si un reloadconfig l'active en cours de route
+    private boolean takeStake(Account account, UUID player, CoinFlip flip) {
+        double balance = EconomyHandler.getBalance(account);
+        if (CoinFlipMod.config.escrowLedger && !replication.isEnabled()) {
+            return settlement.tryDebit(player, flip.currency, flip.amount, balance, flip.id);
         }
+        return balance >= flip.amount && EconomyHandler.remove(account, flip.amount);
     }
 
-    private void cancelFlipAfterTimeout(CoinFlip flip) {
-        List<CoinFlip> playerFlips = activeFlips.get(flip.creator);
-        if (playerFlips != null && playerFlips.contains(flip) && flip.participant == null) {
-            EconomyHandler.getAccount(flip.creator, flip.currency)
-                    .thenAccept(acc -> {
-                        if (acc != null) {
-                            EconomyHandler.add(acc, flip.amount);
-                        }
-                    });
-
-            MinecraftServer server = (MinecraftServer) FabricLoader.getInstance().getGameInstance();
-            ServerPlayerEntity creator = server.getPlayerManager().getPlayer(flip.creator);
-            if (creator != null) {
-                String message = CoinFlipMod.config.getMessage("flipTimeout", Map.of(
-                        "minutes", String.valueOf(CoinFlipMod.config.flipTimeoutMinutes)
-                ));
-                creator.sendMessage(Text.literal(message));
+    /**
+     * Expire un lot de flips arrivés à échéance pendant le même tick.
+     * Les remboursements passent par la file de règlement, qui les regroupe par créateur et par devise.
+     */
+    private void expireFlips(MinecraftServer server, List<CoinFlip> expired) {
+        Set<UUID> refunded = new HashSet<>();
+
+        for (CoinFlip flip : expired) {
+            // Un participant est en train de payer : on revérifie un peu plus tard
+            if (flip.getState() == CoinFlip.State.RESERVED) {
+                expiryWheel.schedule(flip, RESERVED_RECHECK_TICKS);
+                continue;
+            }
+            // Copie dont le propriétaire n'a jamais publié le retrait : rien à rembourser ici
+            if (flip.isRemote()) {
+                removeFlip(flip);
+                continue;
+            }
+            if (!activeFlips.contains(flip) || !flip.transition(CoinFlip.State.OPEN, CoinFlip.State.EXPIRED)) {
+                continue;
             }
 
-            playerFlips.remove(flip);
-            if (playerFlips.isEmpty()) {
-                activeFlips.remove(flip.creator);
+            removeFlip(flip);
+            settlement.credit(flip.creator, flip.currency, flip.amount, flip.id);
+            settlement.releaseStakes(flip.id, flip.currency, flip.creator);
+            record(CoinFlipJournal.EventType.REFUNDED, flip);
+            CoinFlipMod.metrics.increment(CoinFlipMetrics.Counter.EXPIRED);
+            refunded.add(flip.creator);
+        }
+
+        Text message = null;
+        for (UUID creatorId : refunded) {
+            ServerPlayerEntity creator = server != null ? server.getPlayerManager().getPlayer(creatorId) : null;
+            if (creator != null) {
+                if (message == null) {
+                    message = CoinFlipMod.config.getText(MessageKey.FLIP_TIMEOUT,
+                            Args.of(Placeholder.MINUTES, String.valueOf(CoinFlipMod.config.flipTimeoutMinutes)));
+                }
+                creator.sendMessage(message);
             }
-            saveFlips();
         }
     }
 
     public CompletableFuture<Boolean> joinFlip(ServerPlayerEntity joiner, UUID flipCreator, UUID flipId) {
-        UUID joinerId = joiner.getUuid();
-
+        return joinFlip(joiner.getUuid(), flipCreator, flipId);
+    }
 
+    public CompletableFuture<Boolean> joinFlip(UUID joinerId, UUID flipCreator, UUID flipId) {
 
-        List<CoinFlip> flips = activeFlips.get(flipCreator);
-        if (flips == null || flips.isEmpty()) {
+        CoinFlip flip = activeFlips.get(flipId);
+        if (flip == null || !flip.creator.equals(flipCreator) || !flip.tryReserve(joinerId)) {
             return CompletableFuture.completedFuture(false);
         }
+        lobby.publish(CoinFlipLobby.Change.CLAIMED, flip);
 
-        CoinFlip flip = flips.stream()
-                .filter(f -> f.participant == null && f.id.equals(flipId))
-                .findFirst()
-                .orElse(null);
-
-        if (flip == null) {
-            return CompletableFuture.completedFuture(false);
+        // Flip d'un autre serveur : son propriétaire tranche, la réservation locale tient jusqu'à sa réponse
+        if (flip.isRemote()) {
+            return replication.claim(flip, joinerId).whenComplete((claimed, error) -> {
+                if (!Boolean.TRUE.equals(claimed)) {
+                    release(flip);
+                }
+            });
         }
 
         return EconomyHandler.getAccount(joinerId, flip.currency)
                 .thenCompose(joinerAcc -> {
-                    if (joinerAcc == null || EconomyHandler.getBalance(joinerAcc) < flip.amount) {
-                        return CompletableFuture.completedFuture(false);
-                    }
-
-                    if (EconomyHandler.remove(joinerAcc, flip.amount)) {
-                        flip.participant = joinerId;
+                    if (joinerAcc != null && takeStake(joinerAcc, joinerId, flip)) {
+                        flip.transition(CoinFlip.State.RESERVED, CoinFlip.State.SETTLING);
+                        expiryWheel.cancel(flip.id);
+                        record(CoinFlipJournal.EventType.JOINED, flip);
                         resolveFlip(flip);
-                        saveFlips();
                         return CompletableFuture.completedFuture(true);
                     }
+                    release(flip);
                     return CompletableFuture.completedFuture(false);
+                })
+                .whenComplete((success, error) -> {
+                    if (error != null) {
+                        release(flip);
+                    }
                 });
     }
 
     private void resolveFlip(CoinFlip flip) {
-        UUID winnerUuid = new Random().nextBoolean() ? flip.creator : flip.participant;
+        UUID winnerUuid = fairness.draw(flip.id, flip.creator, flip.participant) ? flip.creator : flip.participant;
         UUID loserUuid = winnerUuid.equals(flip.creator) ? flip.participant : flip.creator;
 
+        // Pas de serveur hors jeu (benchmarks, simulation) : pas d'animation, le paiement reste le même
         MinecraftServer server = (MinecraftServer) FabricLoader.getInstance().getGameInstance();
-        ServerPlayerEntity winnerPlayer = server.getPlayerManager().getPlayer(winnerUuid);
-        ServerPlayerEntity loserPlayer = server.getPlayerManager().getPlayer(loserUuid);
+        ServerPlayerEntity winnerPlayer = server != null ? server.getPlayerManager().getPlayer(winnerUuid) : null;
+        ServerPlayerEntity loserPlayer = server != null ? server.getPlayerManager().getPlayer(loserUuid) : null;
 
-        CoinFlipMod.LOGGER.info("resolveFlip() - Winner: {}, Loser: {}", winnerUuid, loserUuid);
+        CoinFlipMod.LOGGER.debug("resolveFlip() - Winner: {}, Loser: {}", winnerUuid, loserUuid);
 
         if (winnerPlayer != null) {
             addActiveAnimation(winnerPlayer.getUuid(), new CoinFlipAnimationGui(winnerPlayer, flip, true));
@@ -258,54 +624,52 @@ public class CoinFlipManager {
 
         // --- Paiement avec taxe ---
         double pot = flip.getAmount() * 2;
-        String currencyAlias = CoinFlipMod.config.getCurrencyAliasFromKey(flip.currency);
-
-        double taxPercent = CoinFlipMod.config.getTaxPercentageForCurrency(currencyAlias);
+        double taxPercent = CoinFlipMod.config.getTaxPercentageForKey(flip.currency);
         double taxAmount = pot * (taxPercent / 100.0);
         double amountWon = pot - taxAmount;
 
-        String currencyKey = flip.currency;
-
-        EconomyHandler.getAccount(winnerUuid, currencyKey).thenAccept(account -> {
-            boolean success = EconomyHandler.add(account, amountWon);
-
-        });
+        settlement.credit(winnerUuid, flip.currency, amountWon, flip.id);
+        CoinFlipHistory.Entry result = new CoinFlipHistory.Entry(flip.id, flip.creator, flip.participant,
+                winnerUuid.equals(flip.creator), flip.amount, flip.currency, amountWon, taxAmount, System.currentTimeMillis());
+        leaderboards.record(result, history.append(result));
+        replication.resolved(flip, winnerUuid);
+        settlement.releaseStakes(flip.id, flip.currency, flip.creator, flip.participant);
+        CoinFlipMod.metrics.recordSettled(flip.currency, (long) flip.amount * 2, taxAmount);
+        CoinFlipMod.metrics.timer(CoinFlipMetrics.Timer.CREATE_TO_RESOLVE).record(System.currentTimeMillis() - flip.createdAt);
 
+        flip.transition(CoinFlip.State.SETTLING, CoinFlip.State.RESOLVED);
         removeFlip(flip);
+        record(CoinFlipJournal.EventType.RESOLVED, flip);
     }
 
-    public void removeFlip(CoinFlip flip) {
-        List<CoinFlip> playerFlips = activeFlips.get(flip.creator);
-        if (playerFlips != null) {
-            playerFlips.remove(flip);
-            if (playerFlips.isEmpty()) {
-                activeFlips.remove(flip.creator);
-            }
+    // Unique point de sortie du carnet : expiration et élément de GUI suivent le flip
+    public boolean removeFlip(CoinFlip flip) {
+        if (!activeFlips.remove(flip)) {
+            return false;
         }
-        saveFlips();
+        expiryWheel.cancel(flip.id);
+        CoinFlipGui.invalidate(flip.id);
+        lobby.publish(CoinFlipLobby.Change.REMOVED, flip);
+        replication.removed(flip);
+        return true;
     }
 
     public void onPlayerDisconnect(UUID playerUuid) {
-        List<CoinFlip> flips = activeFlips.get(playerUuid);
-        if (flips != null) {
-            for (CoinFlip flip : flips) {
-                if (flip.participant == null) {
-                    EconomyHandler.getAccount(flip.creator, flip.currency)
-                            .thenAccept(account -> {
-                                if (account != null) {
-                                    EconomyHandler.add(account, flip.amount);
-                                }
-                            });
-                }
+        for (CoinFlip flip : activeFlips.byCreator(playerUuid)) {
+            if (!flip.isRemote() && flip.transition(CoinFlip.State.OPEN, CoinFlip.State.CANCELLED) && removeFlip(flip)) {
+                settlement.credit(flip.creator, flip.currency, flip.amount, flip.id);
+                settlement.releaseStakes(flip.id, flip.currency, flip.creator);
+                record(CoinFlipJournal.EventType.REFUNDED, flip);
             }
-            activeFlips.remove(playerUuid);
-            saveFlips();
         }
         removeActiveAnimation(playerUuid);
     }
 
     public void clearAllFlips() {
-        activeFlips.clear(); // Clears the map of active flips
+        // Retire chaque flip par le chemin normal pour que les lobbies ouverts se mettent à jour
+        for (CoinFlip flip : activeFlips.all()) {
+            removeFlip(flip);
+        }
         saveFlips(); // Optionally save the cleared state (if you want to persist this)
 
         // Optionally, you might want to handle ongoing animations when clearing all flips:
@@ -316,16 +680,13 @@ public class CoinFlipManager {
     }
 
     public CompletableFuture<CancelFlipResult> cancelFlip(ServerPlayerEntity player) {
-        UUID creatorId = player.getUuid();
-        List<CoinFlip> playerFlips = activeFlips.get(creatorId);
-
-        if (playerFlips == null || playerFlips.isEmpty()) {
-            return CompletableFuture.completedFuture(new CancelFlipResult(false, 0, null)); // Aucun flip actif
-        }
+        return cancelFlip(player.getUuid());
+    }
 
+    public CompletableFuture<CancelFlipResult> cancelFlip(UUID creatorId) {
         CoinFlip flipToCancel = null;
-        for (CoinFlip flip : playerFlips) {
-            if (flip.participant == null) {
+        for (CoinFlip flip : activeFlips.byCreator(creatorId)) {
+            if (!flip.isRemote() && flip.transition(CoinFlip.State.OPEN, CoinFlip.State.CANCELLED)) {
                 flipToCancel = flip;
                 break; // Prend le premier flip non rejoint trouvé
             }
@@ -335,26 +696,13 @@ public class CoinFlipManager {
             return CompletableFuture.completedFuture(new CancelFlipResult(false, 0, null)); // Aucun flip non rejoint à annuler
         }
 
-        CoinFlip finalFlipToCancel = flipToCancel; // Pour utilisation dans lambda
-        return EconomyHandler.getAccount(creatorId, flipToCancel.currency)
-                .thenApply(account -> {
-                    if (account != null) {
-                        EconomyHandler.add(account, finalFlipToCancel.amount);
-
-                        List<CoinFlip> currentFlips = activeFlips.get(creatorId);
-                        if (currentFlips != null) {
-                            currentFlips.remove(finalFlipToCancel);
-                            if (currentFlips.isEmpty()) {
-                                activeFlips.remove(creatorId);
-                            }
-                        }
-                        saveFlips();
-                        String currencyAlias = CoinFlipMod.config.getCurrencyAliasFromKey(finalFlipToCancel.currency);
-                        return new CancelFlipResult(true, finalFlipToCancel.amount, currencyAlias);
-                    } else {
-                        return new CancelFlipResult(false, 0, null); // Erreur de compte (peu probable ici, mais au cas où)
-                    }
-                });
+        // Le remboursement est garanti par la file de règlement, qui réessaie en cas d'échec
+        removeFlip(flipToCancel);
+        settlement.credit(creatorId, flipToCancel.currency, flipToCancel.amount, flipToCancel.id);
+        settlement.releaseStakes(flipToCancel.id, flipToCancel.currency, creatorId);
+        record(CoinFlipJournal.EventType.CANCELLED, flipToCancel);
+        String currencyAlias = CoinFlipMod.config.getCurrencyAliasFromKey(flipToCancel.currency);
+        return CompletableFuture.completedFuture(new CancelFlipResult(true, flipToCancel.amount, currencyAlias));
     }
 
     // Classe interne pour représenter le résultat de l'annulation
@@ -373,26 +721,14 @@ public class CoinFlipManager {
     public void onPlayerJoin(ServerPlayerEntity player) {
         UUID uuid = player.getUuid();
 
-        if (pendingRefunds.containsKey(uuid)) {
-            List<CoinFlip> flips = pendingRefunds.remove(uuid);
-
-            for (CoinFlip flip : flips) {
-                EconomyHandler.getAccount(uuid, flip.currency).thenAccept(account -> {
-                    if (account != null) {
-                        EconomyHandler.add(account, flip.amount);
-                    }
-                });
-            }
-
-            if (!flips.isEmpty()) {
-                String msg = CoinFlipMod.config.getMessage("refundMessage", Map.of());
-                player.sendMessage(Text.literal(msg));
-            }
+        // Les crédits eux-mêmes sont appliqués par la file de règlement, connecté ou non
+        if (pendingRefundNotices.remove(uuid)) {
+            player.sendMessage(CoinFlipMod.config.getText(MessageKey.REFUND_MESSAGE));
         }
     }
 
     public static void shutdown() {
-        scheduler.shutdown();
-        CoinFlipMod.coinFlipManager.saveFlips();
+        CoinFlipMod.coinFlipManager.replication.close();
+        CoinFlipMod.coinFlipManager.persistence.shutdown();
     }
 }
\ No newline at end of file
@@ -0,0 +1,236 @@
+package com.floye.coinflip;
+
+import net.minecraft.text.MutableText;
+import net.minecraft.text.Style;
+import net.minecraft.text.Text;
+import net.minecraft.util.Formatting;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Messages de la config précompilés en modèles : les codes § sont convertis en styles et
+ * les placeholders en emplacements typés une seule fois, au chargement ou au reloadconfig.
+ * Le rendu produit directement un {@link Text}, sans remplacement de chaîne.
+ */
+public class CoinFlipMessages {
+    public enum MessageKey {
+        CREATE_SUCCESS(config -> config.messages.createSuccess),
+        CREATE_FAIL(config -> config.messages.createFail),
+        CANCEL_SUCCESS(config -> config.messages.cancelSuccess),
+        CANCEL_FAIL(config -> config.messages.cancelFail),
+        JOIN_SUCCESS(config -> config.messages.joinSuccess),
+        JOIN_OWN_FLIP(config -> config.messages.joinOwnFlip),
+        JOIN_FAIL(config -> config.messages.joinFail),
+        NOT_ENOUGH_MONEY(config -> config.messages.notEnoughMoney),
+        ALREADY_MAX_FLIPS(config -> config.messages.alreadyMaxFlips),
+        PLAYER_NOT_FOUND(config -> config.messages.playerNotFound),
+        PLAYER_JOINED(config -> config.messages.playerJoined),
+        WIN(config -> config.messages.win),
+        LOSE(config -> config.messages.lose),
+        REFUND_MESSAGE(config -> config.messages.refundMessage),
+        INVALID_CURRENCY(config -> config.messages.invalidCurrency),
+        TAX_APPLIED(config -> config.messages.taxApplied),
+        CLICK_TO_JOIN(config -> config.messages.clickToJoin),
+        CONFIG_RELOADED(config -> config.messages.configReloaded),
+        AVAILABLE_CURRENCIES_TITLE(config -> config.messages.availableCurrenciesTitle),
+        PRIMARY_CURRENCY_FORMAT(config -> config.messages.primaryCurrencyFormat),
+        CURRENCY_FORMAT(config -> config.messages.currencyFormat),
+        CURRENCY_NOT_EXIST(config -> config.messages.currencyNotExist),
+        FLIP_TIMEOUT(config -> config.messages.flipTimeout),
+        BROADCAST_FLIP_CREATION(config -> config.messages.broadcastFlipCreation),
+        BROADCAST_FLIP_DIGEST(config -> config.messages.broadcastFlipDigest),
+        BROADCASTS_MUTED(config -> config.messages.broadcastsMuted),
+        BROADCASTS_UNMUTED(config -> config.messages.broadcastsUnmuted),
+        QUEUE_MATCHED(config -> config.messages.queueMatched),
+        QUEUE_WAITING(config -> config.messages.queueWaiting),
+        FAIRNESS_RECEIPT(config -> config.messages.fairnessReceipt),
+        VERIFY_COMMITMENT(config -> config.messages.verifyCommitment),
+        VERIFY_RESULT(config -> config.messages.verifyResult),
+        VERIFY_VALID(config -> config.messages.verifyValid),
+        VERIFY_INVALID(config -> config.messages.verifyInvalid),
+        VERIFY_NOT_FOUND(config -> config.messages.verifyNotFound),
+        VERIFY_ERROR(config -> config.messages.verifyError),
+        HISTORY_HEADER(config -> config.messages.historyHeader),
+        HISTORY_ENTRY_WON(config -> config.messages.historyEntryWon),
+        HISTORY_ENTRY_LOST(config -> config.messages.historyEntryLost),
+        HISTORY_EMPTY(config -> config.messages.historyEmpty),
+        TOP_HEADER(config -> config.messages.topHeader),
+        TOP_ENTRY(config -> config.messages.topEntry),
+        TOP_EMPTY(config -> config.messages.topEmpty),
+        INVALID_METRIC(config -> config.messages.invalidMetric),
+        STATS_ENTRY(config -> config.messages.statsEntry),
+        METRICS_HEADER(config -> config.messages.metricsHeader),
+        METRICS_LINE(config -> config.messages.metricsLine),
+        EXPORT_SUCCESS(config -> config.messages.exportSuccess),
+        EXPORT_FAIL(config -> config.messages.exportFail),
+        FLIP_ENTRY(config -> config.gui.flipEntryFormat);
+
+        private final Function<CoinFlipConfig, String> source;
+
+        MessageKey(Function<CoinFlipConfig, String> source) {
+            this.source = source;
+        }
+    }
+
+    public enum Placeholder {
+        PLAYER("player"),
+        AMOUNT("amount"),
+        CURRENCY("currency"),
+        MAX("max"),
+        TAX("tax"),
+        PERCENTAGE("percentage"),
+        MINUTES("minutes"),
+        ALIAS("alias"),
+        EXISTS("exists"),
+        ALLOWED_CURRENCIES("allowed_currencies"),
+        COUNT("count"),
+        ID("id"),
+        SEED("seed"),
+        COMMITMENT("commitment"),
+        OUTCOME("outcome"),
+        CHAIN("chain"),
+        TIME("time"),
+        PAGE("page"),
+        RANK("rank"),
+        VALUE("value"),
+        METRIC("metric"),
+        WINS("wins"),
+        LOSSES("losses"),
+        PROFIT("profit"),
+        VOLUME("volume"),
+        FILE("file"),
+        ERROR("error");
+
+        private static final Map<String, Placeholder> BY_NAME = new HashMap<>();
+
+        static {
+            for (Placeholder placeholder : values()) {
+                BY_NAME.put(placeholder.key, placeholder);
+            }
+        }
+
+        private final String key;
+
+        Placeholder(String key) {
+            this.key = key;
+        }
+    }
+
+    /**
+     * Valeurs des placeholders pour un rendu, indexées par ordinal.
+     */
+    public static final class Args {
+        private final String[] values = new String[Placeholder.values().length];
+
+        public static Args of(Placeholder placeholder, String value) {
+            return new Args().with(placeholder, value);
+        }
+
+        public Args with(Placeholder placeholder, String value) {
+            values[placeholder.ordinal()] = value;
+            return this;
+        }
+    }
+
+    private static final Args NO_ARGS = new Args();
+
+    // Segment de texte fixe (déjà construit) ou emplacement à remplir, avec son style
+    private record Segment(Text literal, Placeholder placeholder, Style style) {
+    }
+
+    private final Map<MessageKey, Segment[]> templates = new EnumMap<>(MessageKey.class);
+
+    public CoinFlipMessages(CoinFlipConfig config) {
+        for (MessageKey key : MessageKey.values()) {
+            String raw = key.source.apply(config);
+            templates.put(key, compile(raw == null ? "" : raw));
+        }
+    }
+
+    public MutableText text(MessageKey key) {
+        return text(key, NO_ARGS);
+    }
+
+    public MutableText text(MessageKey key, Args args) {
+        Segment[] segments = templates.get(key);
+        if (segments.length == 1 && segments[0].literal() != null) {
+            return segments[0].literal().copy();
+        }
+
+        MutableText result = Text.empty();
+        for (Segment segment : segments) {
+            if (segment.literal() != null) {
+                result.append(segment.literal());
+            } else {
+                String value = args.values[segment.placeholder().ordinal()];
+                // Placeholder non fourni : laissé tel quel, comme l'ancien remplacement de chaînes
+                result.append(Text.literal(value != null ? value : "%" + segment.placeholder().key + "%")
+                        .setStyle(segment.style()));
+            }
+        }
+        return result;
+    }
+
+    private static Segment[] compile(String raw) {
+        List<Segment> segments = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+        Style style = Style.EMPTY;
+
+        int i = 0;
+        while (i < raw.length()) {
+            char c = raw.charAt(i);
+
+            if (c == '§' && i + 1 < raw.length()) {
+                Formatting formatting = Formatting.byCode(raw.charAt(i + 1));
+                if (formatting != null) {
+                    flush(segments, literal, style);
+                    style = apply(style, formatting);
+                }
+                i += 2;
+                continue;
+            }
+
+            if (c == '%') {
+                int end = raw.indexOf('%', i + 1);
+                Placeholder placeholder = end < 0 ? null : Placeholder.BY_NAME.get(raw.substring(i + 1, end));
+                if (placeholder != null) {
+                    flush(segments, literal, style);
+                    segments.add(new Segment(null, placeholder, style));
+                    i = end + 1;
+                    continue;
+                }
+            }
+
+            literal.append(c);
+            i++;
+        }
+        flush(segments, literal, style);
+
+        if (segments.isEmpty()) {
+            segments.add(new Segment(Text.empty(), null, Style.EMPTY));
+        }
+        return segments.toArray(new Segment[0]);
+    }
+
+    private static void flush(List<Segment> segments, StringBuilder literal, Style style) {
+        if (literal.isEmpty()) return;
+        segments.add(new Segment(Text.literal(literal.toString()).setStyle(style), null, style));
+        literal.setLength(0);
+    }
+
+    // Même sémantique que les codes legacy : une couleur ou §r réinitialise les formats
+    private static Style apply(Style style, Formatting formatting) {
+        if (formatting == Formatting.RESET) {
+            return Style.EMPTY;
+        }
+        if (formatting.isColor()) {
+            return Style.EMPTY.withColor(formatting);
+        }
+        return style.withFormatting(formatting);
+    }
+}
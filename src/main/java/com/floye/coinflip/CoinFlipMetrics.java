@@ -0,0 +1,179 @@
+package com.floye.coinflip;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntSupplier;
+
+/**
+ * Compteurs, histogrammes et jauges du mod. Tout est sans verrou (LongAdder) : l'enregistrement
+ * coûte quelques nanosecondes et peut rester actif en production. Les lectures sont approximatives
+ * pendant les écritures concurrentes, ce qui suffit pour {@code /coinflip stats} et le dump périodique.
+ */
+public class CoinFlipMetrics {
+    public enum Counter {
+        CREATED,
+        JOINED,
+        QUEUE_MATCHED,
+        RESOLVED,
+        CANCELLED,
+        EXPIRED,
+        REFUNDED,
+        DEPOSITS_APPLIED,
+        DEPOSITS_FAILED
+    }
+
+    public enum Timer {
+        ECONOMY_ACCOUNT("µs"),
+        ECONOMY_BALANCE("µs"),
+        ECONOMY_WITHDRAW("µs"),
+        ECONOMY_DEPOSIT("µs"),
+        CREATE_TO_RESOLVE("ms");
+
+        private final String unit;
+
+        Timer(String unit) {
+            this.unit = unit;
+        }
+    }
+
+    /**
+     * Histogramme à seaux log2 : le seau i compte les valeurs de [2^(i-1), 2^i).
+     * Les percentiles renvoient la borne haute du seau, soit au pire le double de la vraie valeur.
+     */
+    public static final class Histogram {
+        private final LongAdder[] buckets = new LongAdder[64];
+        private final LongAdder count = new LongAdder();
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public Histogram() {
+            for (int i = 0; i < buckets.length; i++) {
+                buckets[i] = new LongAdder();
+            }
+        }
+
+        public void record(long value) {
+            long clamped = Math.max(0, value);
+            buckets[64 - Long.numberOfLeadingZeros(clamped)].increment();
+            count.increment();
+            sum.add(clamped);
+            max.accumulate(clamped);
+        }
+
+        public long count() {
+            return count.sum();
+        }
+
+        public long mean() {
+            long n = count.sum();
+            return n == 0 ? 0 : sum.sum() / n;
+        }
+
+        public long max() {
+            return max.get();
+        }
+
+        public long percentile(double p) {
+            long n = count.sum();
+            if (n == 0) return 0;
+
+            long target = (long) Math.ceil(p * n);
+            long seen = 0;
+            for (int i = 0; i < buckets.length; i++) {
+                seen += buckets[i].sum();
+                if (seen >= target) {
+                    return i == 0 ? 0 : (1L << i) - 1;
+                }
+            }
+            return max.get();
+        }
+    }
+
+    private static final class CurrencyStats {
+        final LongAdder volume = new LongAdder();
+        final DoubleAdder tax = new DoubleAdder();
+    }
+
+    private final Map<Counter, LongAdder> counters = new EnumMap<>(Counter.class);
+    private final Map<Timer, Histogram> timers = new EnumMap<>(Timer.class);
+    private final Map<String, CurrencyStats> currencies = new ConcurrentHashMap<>();
+    // Jauges lues à la demande ; enregistrées une fois au démarrage, affichées par nom
+    private final Map<String, IntSupplier> gauges = new ConcurrentSkipListMap<>();
+
+    public CoinFlipMetrics() {
+        for (Counter counter : Counter.values()) {
+            counters.put(counter, new LongAdder());
+        }
+        for (Timer timer : Timer.values()) {
+            timers.put(timer, new Histogram());
+        }
+    }
+
+    public void increment(Counter counter) {
+        counters.get(counter).increment();
+    }
+
+    public long get(Counter counter) {
+        return counters.get(counter).sum();
+    }
+
+    public Histogram timer(Timer timer) {
+        return timers.get(timer);
+    }
+
+    // Durée écoulée depuis startNanos, en microsecondes
+    public void recordSince(Timer timer, long startNanos) {
+        timers.get(timer).record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    // Montant misé (les deux mises) et taxe prélevée sur un flip résolu
+    public void recordSettled(String currency, long pot, double tax) {
+        CurrencyStats stats = currencies.computeIfAbsent(currency, key -> new CurrencyStats());
+        stats.volume.add(pot);
+        stats.tax.add(tax);
+    }
+
+    public double taxCollected(String currency) {
+        CurrencyStats stats = currencies.get(currency);
+        return stats == null ? 0 : stats.tax.sum();
+    }
+
+    public void registerGauge(String name, IntSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public List<String> report() {
+        List<String> lines = new ArrayList<>();
+
+        StringBuilder line = new StringBuilder("Flips :");
+        for (Counter counter : Counter.values()) {
+            line.append(' ').append(counter.name().toLowerCase()).append('=').append(get(counter));
+        }
+        lines.add(line.toString());
+
+        line = new StringBuilder("Jauges :");
+        for (Map.Entry<String, IntSupplier> gauge : gauges.entrySet()) {
+            line.append(' ').append(gauge.getKey()).append('=').append(gauge.getValue().getAsInt());
+        }
+        lines.add(line.toString());
+
+        currencies.forEach((currency, stats) -> lines.add(String.format("%s : volume=%d taxe=%.2f",
+                CoinFlipMod.config.getCurrencyAliasFromKey(currency), stats.volume.sum(), stats.tax.sum())));
+
+        for (Timer timer : Timer.values()) {
+            Histogram histogram = timers.get(timer);
+            if (histogram.count() == 0) continue;
+            lines.add(String.format("%s : n=%d moy=%d p50=%d p99=%d max=%d %s",
+                    timer.name().toLowerCase(), histogram.count(), histogram.mean(),
+                    histogram.percentile(0.50), histogram.percentile(0.99), histogram.max(), timer.unit));
+        }
+        return lines;
+    }
+}
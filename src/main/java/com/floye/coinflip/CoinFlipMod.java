@@ -1,8 +1,10 @@
 package com.floye.coinflip;
 
+import com.floye.coinflip.utils.EconomyHandler;
 import net.fabricmc.api.ModInitializer;
 import net.fabricmc.fabric.api.command.v2.CommandRegistrationCallback;
 import net.fabricmc.fabric.api.event.lifecycle.v1.ServerLifecycleEvents;
+import net.fabricmc.fabric.api.event.lifecycle.v1.ServerTickEvents;
 import net.fabricmc.fabric.api.networking.v1.ServerPlayConnectionEvents;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,8 +13,9 @@ public class CoinFlipMod implements ModInitializer {
 	public static final String MOD_ID = "coinflip";
 	public static final Logger LOGGER = LoggerFactory.getLogger(CoinFlipMod.class);
 
-	public static CoinFlipManager coinFlipManager = new CoinFlipManager();
 	public static CoinFlipConfig config = CoinFlipConfig.load(); // ✅ Chargement de la config
+	public static CoinFlipMetrics metrics = new CoinFlipMetrics();
+	public static CoinFlipManager coinFlipManager = new CoinFlipManager();
 
 	@Override
 	public void onInitialize() {
@@ -22,6 +25,7 @@ public class CoinFlipMod implements ModInitializer {
 
 		ServerPlayConnectionEvents.DISCONNECT.register((handler, server) -> {
 			coinFlipManager.onPlayerDisconnect(handler.getPlayer().getUuid());
+			EconomyHandler.accounts().evict(handler.getPlayer().getUuid());
 		});
 
 		ServerLifecycleEvents.SERVER_STOPPED.register(server -> {
@@ -30,8 +34,15 @@ public class CoinFlipMod implements ModInitializer {
 
 		ServerLifecycleEvents.SERVER_STARTING.register(server -> {
 			coinFlipManager.loadAndRefundFlips();
+			coinFlipManager.getReplication().start();
 		});
+		ServerTickEvents.END_SERVER_TICK.register(server -> {
+			coinFlipManager.tick(server);
+		});
+
 		ServerPlayConnectionEvents.JOIN.register((handler, sender, server) -> {
+			EconomyHandler.accounts().warm(handler.getPlayer().getUuid(),
+					config.getCurrencyRegistry().keys());
 			CoinFlipMod.coinFlipManager.onPlayerJoin(handler.getPlayer());
 		});
 
@@ -0,0 +1,146 @@
+package com.floye.coinflip;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Étage de persistance : les mutations ne font que mettre en file leurs événements,
+ * un unique thread d'écriture les regroupe en au plus une écriture par intervalle.
+ */
+public class CoinFlipPersistence {
+    /**
+     * État annexe sauvegardé par le même writer (crédits en attente, etc.).
+     * Chaque passage appelle {@link #flush()}, à charge pour l'implémentation de ne rien écrire si rien n'a changé.
+     */
+    public interface Store {
+        void flush() throws IOException;
+
+        // Appelé après chaque réécriture du snapshot, pour l'état trop gros à écrire à chaque passage
+        default void compact() throws IOException {
+        }
+    }
+
+    private final CoinFlipJournal journal;
+    private final List<Store> stores = new CopyOnWriteArrayList<>();
+    private final Supplier<Collection<CoinFlipManager.CoinFlip>> openFlips;
+    private final Queue<CoinFlipJournal.Entry> pending = new ConcurrentLinkedQueue<>();
+    // Événements vidés de pending mais pas encore dans le journal, protégés par this
+    private final List<CoinFlipJournal.Entry> batch = new ArrayList<>();
+    private final AtomicBoolean snapshotRequested = new AtomicBoolean(false);
+    private final ScheduledExecutorService writer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "CoinFlip-Persistence");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CoinFlipPersistence(CoinFlipJournal journal, Supplier<Collection<CoinFlipManager.CoinFlip>> openFlips) {
+        this.journal = journal;
+        this.openFlips = openFlips;
+
+        long interval = Math.max(50, CoinFlipMod.config.saveIntervalMillis);
+        writer.scheduleWithFixedDelay(this::flushSafely, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    // Appelable depuis n'importe quel thread, ne touche jamais le disque
+    public void record(CoinFlipJournal.Entry entry) {
+        pending.add(entry);
+    }
+
+    public void attach(Store store) {
+        stores.add(store);
+    }
+
+    // Demande une réécriture complète du snapshot au prochain passage du writer
+    public void markDirty() {
+        snapshotRequested.set(true);
+    }
+
+    private void flushSafely() {
+        try {
+            flush();
+        } catch (IOException | RuntimeException e) {
+            CoinFlipMod.LOGGER.error("Erreur lors de la sauvegarde des CoinFlips", e);
+        }
+    }
+
+    /**
+     * Vide les événements en attente, écrit les stores annexes, puis ajoute les événements au
+     * journal et réécrit le snapshot si demandé ou si le journal est trop long. Les événements
+     * sont vidés avant les stores : un événement vidé a été émis après son crédit, qui est donc
+     * sur disque avant l'événement qui retire son flip du journal.
+     * Les événements sont vidés avant la lecture de l'état pour que le snapshot les couvre.
+     */
+    private synchronized void flush() throws IOException {
+        CoinFlipJournal.Entry entry;
+        while ((entry = pending.poll()) != null) {
+            batch.add(entry);
+        }
+
+        for (Store store : stores) {
+            store.flush();
+        }
+
+        // Si un store échoue, le lot reste en tête pour le passage suivant
+        journal.append(batch);
+        batch.clear();
+
+        if (snapshotRequested.getAndSet(false) || journal.needsCompaction()) {
+            journal.compact(openFlips.get());
+            for (Store store : stores) {
+                store.compact();
+            }
+        }
+    }
+
+    /**
+     * Arrête le writer et effectue une dernière sauvegarde complète, de manière synchrone.
+     */
+    public void shutdown() {
+        writer.shutdown();
+        try {
+            if (!writer.awaitTermination(5, TimeUnit.SECONDS)) {
+                CoinFlipMod.LOGGER.warn("Le thread de sauvegarde CoinFlip ne s'est pas arrêté à temps");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        markDirty();
+        flushSafely();
+        journal.close();
+    }
+
+    /**
+     * Écrit dans un fichier temporaire du même dossier puis le renomme sur la cible :
+     * un crash pendant l'écriture ne peut plus laisser un fichier tronqué.
+     */
+    public static void writeAtomically(Path target, String content) throws IOException {
+        writeAtomically(target, content.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void writeAtomically(Path target, byte[] content) throws IOException {
+        Files.createDirectories(target.getParent());
+        Path temp = target.resolveSibling(target.getFileName() + ".tmp");
+        Files.write(temp, content);
+        try {
+            Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
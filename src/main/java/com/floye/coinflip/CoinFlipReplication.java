@@ -0,0 +1,267 @@
+package com.floye.coinflip;
+
+import net.minecraft.server.MinecraftServer;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Réplication du carnet entre plusieurs serveurs derrière un proxy. Chaque nœud publie les
+ * ajouts et retraits de ses propres flips et garde une copie de ceux des autres, affichée
+ * dans le lobby comme un flip local.
+ * <p>
+ * Rejoindre une copie distante : le flip est d'abord réservé localement (CAS), puis une
+ * demande CLAIM part vers le nœud propriétaire, seul arbitre. Il la passe par le même
+ * {@code joinFlip} que ses propres joueurs : la première réservation gagne, les suivantes
+ * sont refusées, quel que soit le serveur d'origine. Les demandes reçues dans un même lot
+ * sont traitées par date puis par nœud, pour un résultat identique d'un essai à l'autre.
+ * Une demande porte une échéance, bien avant l'abandon du demandeur : arrivée après, elle
+ * est refusée sans toucher aux mises (les horloges des serveurs doivent être synchronisées).
+ * Les mises et le paiement sont faits par le propriétaire : l'économie doit être partagée
+ * entre les serveurs (Impactor sur une base commune), et le ledger local des mises
+ * ({@code escrowLedger}) est incompatible : s'il est activé, la réplication ne démarre pas.
+ * <p>
+ * Les messages reçus sont appliqués sur le thread serveur, depuis {@link #tick}.
+ */
+public class CoinFlipReplication {
+    public enum MessageType {
+        HELLO,        // Démarrage d'un nœud : les autres oublient ses anciens flips et republient les leurs
+        ADDED,
+        REMOVED,
+        CLAIM,        // Vers le propriétaire : un joueur d'un autre nœud veut rejoindre
+        CLAIM_RESULT, // Réponse du propriétaire
+        RESOLVED      // Tirage terminé : chaque nœud anime ses propres joueurs
+    }
+
+    public static class Message {
+        public MessageType type;
+        public String node;   // Émetteur
+        public String target; // CLAIM et CLAIM_RESULT uniquement
+        public UUID flipId;
+        public UUID creator;
+        public UUID joiner;
+        public UUID winner;
+        public int amount;
+        public String currency;
+        public long createdAt;
+        public long expiresAt;
+        public boolean success;
+        public long time;
+        public long deadline; // CLAIM : le propriétaire refuse la demande passé cette date
+
+        static Message of(MessageType type, String node, CoinFlipManager.CoinFlip flip) {
+            Message message = new Message();
+            message.type = type;
+            message.node = node;
+            message.flipId = flip.id;
+            message.creator = flip.creator;
+            message.amount = flip.amount;
+            message.currency = flip.currency;
+            message.createdAt = flip.createdAt;
+            message.expiresAt = flip.expiresAt;
+            message.time = System.currentTimeMillis();
+            return message;
+        }
+    }
+
+    private static final long CLAIM_TIMEOUT_MILLIS = 10_000;
+    // Le propriétaire cesse d'accepter une demande bien avant que le demandeur abandonne :
+    // la prise des mises a le temps de finir, et un léger décalage d'horloge est toléré
+    private static final long CLAIM_ACCEPT_MILLIS = CLAIM_TIMEOUT_MILLIS / 2;
+    private static final Comparator<Message> CLAIM_ORDER = Comparator
+            .<Message>comparingLong(message -> message.time)
+            .thenComparing(message -> message.node)
+            .thenComparing(message -> message.joiner);
+
+    private final CoinFlipManager manager;
+    private final String nodeId;
+    private final CoinFlipBus bus;
+    private final Queue<Message> inbox = new ConcurrentLinkedQueue<>();
+    private final Map<UUID, CompletableFuture<Boolean>> pendingClaims = new ConcurrentHashMap<>();
+
+    public CoinFlipReplication(CoinFlipManager manager, CoinFlipConfig config) {
+        this.manager = manager;
+        String transport = config.replicationTransport == null ? "none" : config.replicationTransport.toLowerCase(Locale.ROOT);
+        this.nodeId = config.replicationNodeId == null || config.replicationNodeId.isBlank()
+                ? (transport.equals("none") ? "local" : storedNodeId())
+                : config.replicationNodeId;
+        // Chaque nœud débiterait le même solde Impactor dans son propre ledger
+        if (!transport.equals("none") && config.escrowLedger) {
+            CoinFlipMod.LOGGER.error("Réplication CoinFlip incompatible avec escrowLedger : réplication désactivée, serveur seul");
+            transport = "none";
+        }
+        this.bus = switch (transport) {
+            case "directory" -> new CoinFlipDirectoryBus(Path.of(config.replicationDirectory), nodeId, config.replicationPollMillis);
+            case "none" -> CoinFlipBus.NONE;
+            default -> {
+                CoinFlipMod.LOGGER.warn("Transport de réplication inconnu : {}, réplication désactivée", config.replicationTransport);
+                yield CoinFlipBus.NONE;
+            }
+        };
+    }
+
+    // Identifiant tiré une fois puis gardé dans le dossier de données : stable d'un redémarrage à l'autre
+    private static String storedNodeId() {
+        Path path = CoinFlipConfig.dataDir().resolve("coinflip_node_id");
+        try {
+            if (Files.exists(path)) {
+                String stored = Files.readString(path, StandardCharsets.UTF_8).trim();
+                if (!stored.isEmpty()) {
+                    return stored;
+                }
+            }
+            String generated = UUID.randomUUID().toString().substring(0, 8);
+            Files.createDirectories(path.getParent());
+            CoinFlipPersistence.writeAtomically(path, generated);
+            return generated;
+        } catch (IOException e) {
+            CoinFlipMod.LOGGER.warn("Identifiant de nœud CoinFlip non sauvegardé, tiré pour cette session", e);
+            return UUID.randomUUID().toString().substring(0, 8);
+        }
+    }
+
+    public boolean isEnabled() {
+        return bus != CoinFlipBus.NONE;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void start() {
+        if (!isEnabled()) return;
+
+        bus.start(inbox::add);
+        Message hello = new Message();
+        hello.type = MessageType.HELLO;
+        hello.node = nodeId;
+        hello.time = System.currentTimeMillis();
+        bus.publish(hello);
+        CoinFlipMod.LOGGER.info("Réplication CoinFlip démarrée (nœud {})", nodeId);
+    }
+
+    public void close() {
+        bus.close();
+    }
+
+    // --- Événements locaux ---
+
+    public void published(CoinFlipManager.CoinFlip flip) {
+        if (isEnabled() && !flip.isRemote()) {
+            bus.publish(Message.of(MessageType.ADDED, nodeId, flip));
+        }
+    }
+
+    public void removed(CoinFlipManager.CoinFlip flip) {
+        if (isEnabled() && !flip.isRemote()) {
+            bus.publish(Message.of(MessageType.REMOVED, nodeId, flip));
+        }
+    }
+
+    public void resolved(CoinFlipManager.CoinFlip flip, UUID winner) {
+        if (!isEnabled()) return;
+
+        Message message = Message.of(MessageType.RESOLVED, nodeId, flip);
+        message.joiner = flip.getJoiner();
+        message.winner = winner;
+        bus.publish(message);
+    }
+
+    /**
+     * Demande au propriétaire d'une copie distante, déjà réservée localement, de la faire
+     * rejoindre par {@code joiner}. Sans réponse à temps, la demande est considérée refusée.
+     */
+    public CompletableFuture<Boolean> claim(CoinFlipManager.CoinFlip flip, UUID joiner) {
+        Message message = Message.of(MessageType.CLAIM, nodeId, flip);
+        message.target = flip.node;
+        message.joiner = joiner;
+        message.deadline = message.time + CLAIM_ACCEPT_MILLIS;
+
+        CompletableFuture<Boolean> future = new CompletableFuture<>();
+        pendingClaims.put(flip.id, future);
+        bus.publish(message);
+        return future.completeOnTimeout(false, CLAIM_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)
+                .whenComplete((claimed, error) -> pendingClaims.remove(flip.id, future));
+    }
+
+    // --- Messages reçus, thread serveur ---
+
+    public void tick(MinecraftServer server) {
+        if (inbox.isEmpty()) return;
+
+        List<Message> claims = new ArrayList<>();
+        Message message;
+        while ((message = inbox.poll()) != null) {
+            switch (message.type) {
+                case HELLO -> {
+                    manager.dropRemoteFlips(message.node);
+                    for (CoinFlipManager.CoinFlip flip : manager.getActiveFlips()) {
+                        if (flip.isOpen()) {
+                            published(flip);
+                        }
+                    }
+                }
+                case ADDED -> manager.addRemoteFlip(new CoinFlipManager.CoinFlip(message.flipId, message.creator,
+                        message.amount, message.currency, message.node, message.createdAt, message.expiresAt));
+                case REMOVED -> manager.removeRemoteFlip(message.flipId);
+                case CLAIM -> {
+                    if (nodeId.equals(message.target)) {
+                        claims.add(message);
+                    }
+                }
+                case CLAIM_RESULT -> {
+                    CompletableFuture<Boolean> future = nodeId.equals(message.target) ? pendingClaims.remove(message.flipId) : null;
+                    if (future != null) {
+                        future.complete(message.success);
+                    }
+                }
+                case RESOLVED -> {
+                    manager.removeRemoteFlip(message.flipId);
+                    manager.showRemoteResult(server, new CoinFlipManager.CoinFlip(message.flipId, message.creator,
+                            message.amount, message.currency, message.node, message.createdAt, message.expiresAt),
+                            message.joiner, message.winner);
+                }
+            }
+        }
+
+        claims.sort(CLAIM_ORDER);
+        for (Message claim : claims) {
+            answer(claim);
+        }
+    }
+
+    private void answer(Message claim) {
+        // Le demandeur a peut-être déjà abandonné et prévenu son joueur : on ne prend pas sa mise
+        if (System.currentTimeMillis() > claim.deadline) {
+            CoinFlipMod.LOGGER.warn("Demande de {} pour le flip {} arrivée trop tard, refusée", claim.node, claim.flipId);
+            reply(claim, false);
+            return;
+        }
+        CoinFlipManager.CoinFlip flip = manager.getFlipBook().get(claim.flipId);
+        if (flip == null || flip.isRemote()) {
+            reply(claim, false);
+            return;
+        }
+        manager.joinFlip(claim.joiner, flip.creator, flip.id)
+                .whenComplete((joined, error) -> reply(claim, error == null && Boolean.TRUE.equals(joined)));
+    }
+
+    private void reply(Message claim, boolean success) {
+        Message reply = new Message();
+        reply.type = MessageType.CLAIM_RESULT;
+        reply.node = nodeId;
+        reply.target = claim.node;
+        reply.flipId = claim.flipId;
+        reply.joiner = claim.joiner;
+        reply.success = success;
+        reply.time = System.currentTimeMillis();
+        bus.publish(reply);
+    }
+}
@@ -0,0 +1,389 @@
+package com.floye.coinflip;
+
+import com.floye.coinflip.utils.EconomyHandler;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+/**
+ * File de règlement des gains et remboursements. Les crédits sont cumulés par
+ * (joueur, devise) puis appliqués une fois par tick : un seul dépôt par groupe, même
+ * pour des centaines de flips. Un dépôt raté est remis en file avec un délai croissant.
+ * Les crédits non appliqués sont sauvegardés par le writer de {@link CoinFlipPersistence}
+ * et rechargés au démarrage. Un groupe n'est déposé qu'une fois son dernier changement écrit
+ * sur disque, et les flips d'un groupe payé restent couverts dans le fichier encore deux
+ * passages du writer : le temps que l'événement RESOLVED atteigne le journal. Un crash ne
+ * peut donc ni payer un crédit inconnu du disque, ni rembourser un flip déjà payé.
+ * <p>
+ * Avec {@code escrowLedger}, les mises sont aussi débitées ici plutôt que retirées d'Impactor :
+ * chaque groupe porte alors un solde signé, écrit (dépôt ou retrait net) toutes les
+ * {@code escrowWriteBackSeconds}. Tant qu'une mise n'est pas écrite, elle reste visible dans
+ * Impactor ; si le joueur la dépense ailleurs, le retrait échoue et la dette est retentée.
+ */
+public class CoinFlipSettlement implements CoinFlipPersistence.Store {
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+    private static final long MAX_RETRY_DELAY_MILLIS = 60_000;
+    // Passages du writer pendant lesquels les flips d'un groupe payé restent couverts
+    private static final int SETTLED_FLUSHES = 2;
+
+    private record CreditKey(UUID player, String currency) {
+    }
+
+    // Mise débitée dans le ledger pour un flip pas encore terminé
+    public record Stake(UUID player, String currency, double amount, UUID flipId) {
+    }
+
+    private static final class Credit {
+        double amount; // Négatif en mode ledger quand les mises dépassent les gains
+        // Flips couverts par ce crédit : au redémarrage, le journal ne les rembourse pas une seconde fois
+        final Set<UUID> flips = new HashSet<>();
+        // Mises des flips encore en cours : un flip perdu dans un crash fait rendre sa mise
+        final Map<UUID, Double> stakes = new HashMap<>();
+        int attempts;
+        long retryAt;
+        long version; // Dernier changement ; déposable une fois version <= persistedVersion
+
+        void merge(Credit other) {
+            amount += other.amount;
+            flips.addAll(other.flips);
+            stakes.putAll(other.stakes);
+            version = Math.max(version, other.version);
+        }
+    }
+
+    // Flips d'un groupe réglé, encore écrits dans le fichier pendant quelques passages
+    private static final class Settled {
+        final CreditKey key;
+        final Set<UUID> flips;
+        int remainingFlushes = SETTLED_FLUSHES;
+
+        Settled(CreditKey key, Set<UUID> flips) {
+            this.key = key;
+            this.flips = flips;
+        }
+    }
+
+    // Forme sur disque d'un crédit en attente
+    public static class Record {
+        public UUID player;
+        public String currency;
+        public double amount;
+        public List<UUID> flips;
+        public Map<UUID, Double> stakes;
+    }
+
+    private final Path path;
+    // Protégés par this ; un groupe en cours de dépôt reste dans inFlight jusqu'au résultat
+    private final Map<CreditKey, Credit> pending = new HashMap<>();
+    private final Map<CreditKey, Credit> inFlight = new HashMap<>();
+    private final List<Settled> settled = new ArrayList<>();
+    private long version = 0;
+    private long persistedVersion = 0;
+    private volatile boolean dirty = false;
+    private long nextWriteBack = 0; // Thread serveur uniquement
+
+    public CoinFlipSettlement(Path path) {
+        this.path = path;
+    }
+
+    public synchronized void credit(UUID player, String currency, double amount, UUID flipId) {
+        if (amount <= 0) return;
+
+        Credit credit = pending.computeIfAbsent(new CreditKey(player, currency), key -> new Credit());
+        credit.amount += amount;
+        if (flipId != null) {
+            credit.flips.add(flipId);
+        }
+        touch(credit);
+    }
+
+    // Le groupe a changé : il attendra la prochaine écriture avant d'être déposé
+    private void touch(Credit credit) {
+        credit.version = ++version;
+        dirty = true;
+    }
+
+    /**
+     * Mode ledger : débite la mise si le solde Impactor, corrigé de ce qui n'est pas encore
+     * écrit, la couvre. Vérification et débit se font sous le même verrou.
+     */
+    public synchronized boolean tryDebit(UUID player, String currency, double amount, double impactorBalance, UUID flipId) {
+        if (amount <= 0 || impactorBalance + net(player, currency) < amount) {
+            return false;
+        }
+
+        Credit credit = pending.computeIfAbsent(new CreditKey(player, currency), key -> new Credit());
+        credit.amount -= amount;
+        credit.stakes.put(flipId, amount);
+        touch(credit);
+        return true;
+    }
+
+    // Solde pas encore écrit dans Impactor pour ce joueur et cette devise
+    public synchronized double net(UUID player, String currency) {
+        CreditKey key = new CreditKey(player, currency);
+        Credit waiting = pending.get(key);
+        Credit writing = inFlight.get(key);
+        return (waiting == null ? 0 : waiting.amount) + (writing == null ? 0 : writing.amount);
+    }
+
+    // Le flip est terminé : ses mises font désormais partie du solde net comme le reste
+    public synchronized void releaseStakes(UUID flipId, String currency, UUID... players) {
+        for (UUID player : players) {
+            if (player == null) continue;
+            CreditKey key = new CreditKey(player, currency);
+            for (Map<CreditKey, Credit> groups : List.of(pending, inFlight)) {
+                Credit credit = groups.get(key);
+                if (credit != null && credit.stakes.remove(flipId) != null) {
+                    touch(credit);
+                }
+            }
+        }
+    }
+
+    // Au démarrage : mises encore attachées à un flip, retirées par clearStakes une fois rendues
+    public synchronized List<Stake> stakes() {
+        List<Stake> stakes = new ArrayList<>();
+        for (Map<CreditKey, Credit> groups : List.of(pending, inFlight)) {
+            groups.forEach((key, credit) -> credit.stakes.forEach((flipId, amount) ->
+                    stakes.add(new Stake(key.player(), key.currency(), amount, flipId))));
+        }
+        return stakes;
+    }
+
+    public synchronized void clearStakes() {
+        for (Map<CreditKey, Credit> groups : List.of(pending, inFlight)) {
+            for (Credit credit : groups.values()) {
+                if (!credit.stakes.isEmpty()) {
+                    credit.stakes.clear();
+                    touch(credit);
+                }
+            }
+        }
+    }
+
+    // Regroupe des crédits hors verrou ; rien n'entre dans la file avant commit()
+    public RefundBatch refundBatch(int limit) {
+        return new RefundBatch(limit);
+    }
+
+    /**
+     * Remboursements préparés pendant la relecture du journal. Ils ne sont versés à la file
+     * qu'une fois la relecture terminée sans erreur, par lots d'au plus {@code limit} groupes
+     * par prise du verrou ; en cas d'échec, {@link #discard()} les oublie tous.
+     */
+    public final class RefundBatch {
+        private final Map<CreditKey, Credit> groups = new HashMap<>();
+        private final int limit;
+
+        private RefundBatch(int limit) {
+            this.limit = Math.max(1, limit);
+        }
+
+        public void add(UUID player, String currency, double amount, UUID flipId) {
+            if (amount <= 0) return;
+
+            Credit credit = groups.computeIfAbsent(new CreditKey(player, currency), key -> new Credit());
+            credit.amount += amount;
+            credit.flips.add(flipId);
+        }
+
+        public void commit() {
+            Iterator<Map.Entry<CreditKey, Credit>> iterator = groups.entrySet().iterator();
+            while (iterator.hasNext()) {
+                synchronized (CoinFlipSettlement.this) {
+                    for (int i = 0; i < limit && iterator.hasNext(); i++) {
+                        Map.Entry<CreditKey, Credit> group = iterator.next();
+                        touch(group.getValue());
+                        pending.merge(group.getKey(), group.getValue(), (current, added) -> {
+                            current.merge(added);
+                            return current;
+                        });
+                        iterator.remove();
+                    }
+                }
+            }
+        }
+
+        public void discard() {
+            groups.clear();
+        }
+    }
+
+    public synchronized Set<UUID> coveredFlips() {
+        Set<UUID> flips = new HashSet<>();
+        pending.values().forEach(credit -> flips.addAll(credit.flips));
+        inFlight.values().forEach(credit -> flips.addAll(credit.flips));
+        settled.forEach(group -> flips.addAll(group.flips));
+        return flips;
+    }
+
+    public synchronized int size() {
+        return pending.size() + inFlight.size();
+    }
+
+    // Thread serveur : lance les dépôts des groupes prêts, sans attendre leur résultat
+    public void tick() {
+        List<Map.Entry<CreditKey, Credit>> batch;
+        synchronized (this) {
+            if (pending.isEmpty()) return;
+
+            long now = System.currentTimeMillis();
+            // Mode ledger : les groupes s'accumulent jusqu'à la prochaine écriture
+            if (CoinFlipMod.config.escrowLedger) {
+                if (now < nextWriteBack) return;
+                nextWriteBack = now + CoinFlipMod.config.escrowWriteBackSeconds * 1000L;
+            }
+
+            batch = new ArrayList<>();
+            Iterator<Map.Entry<CreditKey, Credit>> iterator = pending.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<CreditKey, Credit> entry = iterator.next();
+                if (entry.getValue().retryAt > now || inFlight.containsKey(entry.getKey())) continue;
+                // Pas encore sur disque : un crash après le dépôt ferait rembourser le flip au redémarrage
+                if (entry.getValue().version > persistedVersion) continue;
+
+                iterator.remove();
+                dirty = true;
+                // Mises et gains qui s'annulent : rien à écrire
+                if (Math.abs(entry.getValue().amount) < 1e-9) {
+                    settle(entry.getKey(), entry.getValue());
+                    continue;
+                }
+
+                inFlight.put(entry.getKey(), entry.getValue());
+                batch.add(entry);
+            }
+        }
+
+        for (Map.Entry<CreditKey, Credit> entry : batch) {
+            CreditKey key = entry.getKey();
+            Credit credit = entry.getValue();
+            EconomyHandler.getAccount(key.player(), key.currency())
+                    .whenComplete((account, error) -> {
+                        Throwable failure = error;
+                        boolean success = false;
+                        if (failure == null && account != null) {
+                            try {
+                                success = credit.amount > 0
+                                        ? EconomyHandler.add(account, credit.amount)
+                                        : EconomyHandler.remove(account, -credit.amount);
+                            } catch (RuntimeException e) {
+                                failure = e;
+                            }
+                        }
+                        complete(key, credit, success, failure);
+                    });
+        }
+    }
+
+    private synchronized void complete(CreditKey key, Credit credit, boolean success, Throwable error) {
+        inFlight.remove(key);
+        dirty = true;
+        CoinFlipMod.metrics.increment(success ? CoinFlipMetrics.Counter.DEPOSITS_APPLIED : CoinFlipMetrics.Counter.DEPOSITS_FAILED);
+        if (success) {
+            settle(key, credit);
+            return;
+        }
+
+        credit.attempts++;
+        credit.retryAt = System.currentTimeMillis() + Math.min(MAX_RETRY_DELAY_MILLIS, 1000L << Math.min(credit.attempts, 16));
+        CoinFlipMod.LOGGER.warn("Règlement de {} {} pour {} refusé (tentative {}), nouvel essai plus tard",
+                credit.amount, key.currency(), key.player(), credit.attempts, error);
+
+        // Des crédits ont pu arriver entre-temps pour le même groupe : on les fusionne
+        Credit newer = pending.put(key, credit);
+        if (newer != null) {
+            credit.merge(newer);
+        }
+    }
+
+    private void settle(CreditKey key, Credit credit) {
+        if (!credit.flips.isEmpty()) {
+            settled.add(new Settled(key, credit.flips));
+        }
+    }
+
+    public synchronized void load() throws IOException {
+        if (!Files.exists(path)) return;
+
+        List<Record> records;
+        try {
+            records = GSON.fromJson(Files.readString(path, StandardCharsets.UTF_8), new TypeToken<List<Record>>() {}.getType());
+        } catch (JsonParseException e) {
+            CoinFlipMod.LOGGER.error("Fichier de règlement illisible, ignoré : {}", path, e);
+            return;
+        }
+        if (records == null) return;
+
+        for (Record record : records) {
+            if (record == null || record.player == null || record.currency == null) continue;
+            Credit credit = pending.computeIfAbsent(new CreditKey(record.player, record.currency), key -> new Credit());
+            credit.amount += record.amount;
+            if (record.flips != null) {
+                credit.flips.addAll(record.flips);
+            }
+            if (record.stakes != null) {
+                credit.stakes.putAll(record.stakes);
+            }
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        List<Record> records;
+        List<Settled> written;
+        long captured;
+        synchronized (this) {
+            if (!dirty) return;
+            dirty = false;
+            captured = version;
+            written = new ArrayList<>(settled);
+
+            records = new ArrayList<>(pending.size() + inFlight.size() + written.size());
+            pending.forEach((key, credit) -> records.add(toRecord(key, credit)));
+            inFlight.forEach((key, credit) -> records.add(toRecord(key, credit)));
+            for (Settled group : written) {
+                Record record = new Record();
+                record.player = group.key.player();
+                record.currency = group.key.currency();
+                record.flips = new ArrayList<>(group.flips);
+                records.add(record);
+            }
+        }
+        try {
+            CoinFlipPersistence.writeAtomically(path, GSON.toJson(records));
+        } catch (IOException e) {
+            dirty = true;
+            throw e;
+        }
+
+        synchronized (this) {
+            persistedVersion = Math.max(persistedVersion, captured);
+            for (Settled group : written) {
+                group.remainingFlushes--;
+            }
+            // Les groupes réglés disparaissent du fichier à l'écriture suivante
+            if (settled.removeIf(group -> group.remainingFlushes <= 0) || !settled.isEmpty()) {
+                dirty = true;
+            }
+        }
+    }
+
+    private static Record toRecord(CreditKey key, Credit credit) {
+        Record record = new Record();
+        record.player = key.player();
+        record.currency = key.currency();
+        record.amount = credit.amount;
+        record.flips = new ArrayList<>(credit.flips);
+        record.stakes = credit.stakes.isEmpty() ? null : new HashMap<>(credit.stakes);
+        return record;
+    }
+}
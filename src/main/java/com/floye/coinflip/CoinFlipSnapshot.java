@@ -0,0 +1,201 @@
+package com.floye.coinflip;
+
+import com.floye.coinflip.CoinFlipJournal.Entry;
+import com.floye.coinflip.CoinFlipJournal.EventType;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Format binaire du snapshot des flips ouverts.
+ * <pre>
+ * en-tête : magic "CFSN" (int), version (byte), nombre de devises (varint), devises (UTF)
+ * blocs   : nombre d'entrées (varint, 0 = fin), taille (varint), données, CRC32 des données (int)
+ * entrée  : type (byte), id, créateur (2 longs chacun), participant (byte 0/1 + 2 longs),
+ *           montant (varint), devise (varint, index dans l'en-tête), date (varlong)
+ * </pre>
+ * Tous les CRC sont vérifiés avant qu'une seule entrée soit transmise : un snapshot abîmé
+ * échoue avec {@link CorruptSnapshotException} sans avoir rien livré, et l'appelant peut se
+ * rabattre sur un autre snapshot ou mettre les fichiers de côté.
+ */
+public final class CoinFlipSnapshot {
+    private static final int MAGIC = 0x4346534E; // "CFSN"
+    private static final byte VERSION = 1;
+    private static final int BLOCK_SIZE = 1024;
+
+    public static class CorruptSnapshotException extends IOException {
+        public CorruptSnapshotException(String message) {
+            super(message);
+        }
+    }
+
+    private CoinFlipSnapshot() {
+    }
+
+    public static void write(Path path, Collection<Entry> entries) throws IOException {
+        // Table des devises : chaque clé n'est écrite qu'une fois
+        Map<String, Integer> currencies = new LinkedHashMap<>();
+        for (Entry entry : entries) {
+            currencies.putIfAbsent(entry.currency, currencies.size());
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 48);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeByte(VERSION);
+        writeVarLong(out, currencies.size());
+        for (String currency : currencies.keySet()) {
+            out.writeUTF(currency);
+        }
+
+        ByteArrayOutputStream blockBytes = new ByteArrayOutputStream(BLOCK_SIZE * 48);
+        DataOutputStream block = new DataOutputStream(blockBytes);
+        int count = 0;
+        for (Entry entry : entries) {
+            block.writeByte(entry.type.ordinal());
+            writeUuid(block, entry.id);
+            writeUuid(block, entry.creator);
+            block.writeBoolean(entry.participant != null);
+            if (entry.participant != null) {
+                writeUuid(block, entry.participant);
+            }
+            writeVarLong(block, entry.amount);
+            writeVarLong(block, currencies.get(entry.currency));
+            writeVarLong(block, entry.time);
+
+            if (++count == BLOCK_SIZE) {
+                writeBlock(out, blockBytes, count);
+                count = 0;
+            }
+        }
+        if (count > 0) {
+            writeBlock(out, blockBytes, count);
+        }
+        writeVarLong(out, 0);
+        out.flush();
+
+        CoinFlipPersistence.writeAtomically(path, bytes.toByteArray());
+    }
+
+    private static void writeBlock(DataOutputStream out, ByteArrayOutputStream block, int count) throws IOException {
+        byte[] data = block.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        writeVarLong(out, count);
+        writeVarLong(out, data.length);
+        out.write(data);
+        out.writeInt((int) crc.getValue());
+        block.reset();
+    }
+
+    /**
+     * Premier passage : parcourt tous les blocs et vérifie leur CRC sans décoder les entrées.
+     */
+    public static void verify(Path path) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            readHeader(in, path);
+
+            byte[] data = new byte[0];
+            int blockIndex = 0;
+            while (readVarLong(in) > 0) {
+                int length = (int) readVarLong(in);
+                if (data.length < length) {
+                    data = new byte[length];
+                }
+                in.readFully(data, 0, length);
+                CRC32 crc = new CRC32();
+                crc.update(data, 0, length);
+                if ((int) crc.getValue() != in.readInt()) {
+                    throw new CorruptSnapshotException("Bloc " + blockIndex + " du snapshot CoinFlip corrompu : " + path);
+                }
+                blockIndex++;
+            }
+        } catch (EOFException e) {
+            throw new CorruptSnapshotException("Snapshot CoinFlip tronqué : " + path);
+        }
+    }
+
+    /**
+     * Vérifie tout le fichier ({@link #verify}), puis le lit bloc par bloc : seul le bloc
+     * courant est en mémoire.
+     */
+    public static void read(Path path, Consumer<Entry> sink) throws IOException {
+        verify(path);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            String[] currencies = readHeader(in, path);
+
+            EventType[] types = EventType.values();
+            long count;
+            while ((count = readVarLong(in)) > 0) {
+                byte[] data = new byte[(int) readVarLong(in)];
+                in.readFully(data);
+                in.readInt(); // CRC déjà vérifié
+
+                DataInputStream block = new DataInputStream(new ByteArrayInputStream(data));
+                for (long i = 0; i < count; i++) {
+                    Entry entry = new Entry();
+                    entry.type = types[block.readUnsignedByte()];
+                    entry.id = readUuid(block);
+                    entry.creator = readUuid(block);
+                    entry.participant = block.readBoolean() ? readUuid(block) : null;
+                    entry.amount = (int) readVarLong(block);
+                    entry.currency = currencies[(int) readVarLong(block)];
+                    entry.time = readVarLong(block);
+                    sink.accept(entry);
+                }
+            }
+        }
+    }
+
+    private static String[] readHeader(DataInputStream in, Path path) throws IOException {
+        if (in.readInt() != MAGIC) {
+            throw new CorruptSnapshotException("Snapshot CoinFlip invalide : " + path);
+        }
+        int version = in.readUnsignedByte();
+        if (version != VERSION) {
+            throw new IOException("Version de snapshot CoinFlip inconnue (" + version + ") : " + path);
+        }
+
+        String[] currencies = new String[(int) readVarLong(in)];
+        for (int i = 0; i < currencies.length; i++) {
+            currencies[i] = in.readUTF();
+        }
+        return currencies;
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID uuid) throws IOException {
+        out.writeLong(uuid.getMostSignificantBits());
+        out.writeLong(uuid.getLeastSignificantBits());
+    }
+
+    private static UUID readUuid(DataInputStream in) throws IOException {
+        return new UUID(in.readLong(), in.readLong());
+    }
+
+    // Entiers positifs sur 7 bits par octet : un montant courant tient sur 1 à 3 octets
+    private static void writeVarLong(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    private static long readVarLong(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Varint trop long dans le snapshot CoinFlip");
+    }
+}
@@ -0,0 +1,104 @@
+package com.floye.coinflip.utils;
+
+import net.impactdev.impactor.api.economy.accounts.Account;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BiFunction;
+
+/**
+ * Cache des comptes Impactor résolus, par joueur puis par devise. On ne garde que la
+ * référence au compte : les soldes sont toujours lus et modifiés dans Impactor.
+ * Rempli à la connexion, vidé à la déconnexion, et purgé des joueurs inactifs par {@link #sweep}.
+ */
+public class AccountCache {
+    private static final class Handle {
+        final CompletableFuture<Account> account;
+        // Le nettoyage en cas d'échec n'est attaché qu'une fois, par le premier appelant
+        final AtomicBoolean watched = new AtomicBoolean(false);
+        volatile long lastAccess;
+
+        Handle(CompletableFuture<Account> account) {
+            this.account = account;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+
+    private final Map<UUID, Map<String, Handle>> handles = new ConcurrentHashMap<>();
+    private final BiFunction<UUID, String, CompletableFuture<Account>> resolver;
+
+    public AccountCache(BiFunction<UUID, String, CompletableFuture<Account>> resolver) {
+        this.resolver = resolver;
+    }
+
+    public CompletableFuture<Account> get(UUID playerId, String currencyKey) {
+        Map<String, Handle> accounts = handles.computeIfAbsent(playerId, id -> new ConcurrentHashMap<>());
+        Handle handle = accounts.computeIfAbsent(currencyKey, key -> new Handle(resolver.apply(playerId, key)));
+        handle.lastAccess = System.currentTimeMillis();
+
+        // Une résolution ratée ne doit pas rester en cache : la suivante réessaiera.
+        // Attaché hors de computeIfAbsent : un futur déjà échoué retire l'entrée tout de suite
+        if (handle.watched.compareAndSet(false, true)) {
+            handle.account.whenComplete((account, error) -> {
+                if (error != null || account == null) {
+                    accounts.remove(currencyKey, handle);
+                }
+            });
+        }
+        return handle.account;
+    }
+
+    // Résout d'avance les comptes du joueur pour chaque devise configurée
+    public void warm(UUID playerId, Iterable<String> currencyKeys) {
+        for (String currencyKey : currencyKeys) {
+            get(playerId, currencyKey);
+        }
+    }
+
+    public void evict(UUID playerId) {
+        handles.remove(playerId);
+    }
+
+    public void clear() {
+        handles.clear();
+    }
+
+    public int size() {
+        return handles.size();
+    }
+
+    /**
+     * Retire les joueurs sans accès depuis {@code ttlMillis}, puis les moins récemment
+     * utilisés tant qu'on dépasse {@code maxPlayers}.
+     */
+    public void sweep(long ttlMillis, int maxPlayers) {
+        long deadline = System.currentTimeMillis() - ttlMillis;
+        handles.entrySet().removeIf(entry -> lastAccess(entry.getValue()) < deadline);
+
+        int excess = handles.size() - maxPlayers;
+        if (excess <= 0) return;
+
+        // Dates figées avant le tri : elles peuvent bouger pendant qu'on trie
+        List<Map.Entry<UUID, Long>> byAge = new ArrayList<>(handles.size());
+        for (Map.Entry<UUID, Map<String, Handle>> entry : handles.entrySet()) {
+            byAge.add(Map.entry(entry.getKey(), lastAccess(entry.getValue())));
+        }
+        byAge.sort(Map.Entry.comparingByValue());
+        for (int i = 0; i < excess && i < byAge.size(); i++) {
+            handles.remove(byAge.get(i).getKey());
+        }
+    }
+
+    private static long lastAccess(Map<String, Handle> accounts) {
+        long last = 0;
+        for (Handle handle : accounts.values()) {
+            last = Math.max(last, handle.lastAccess);
+        }
+        return last;
+    }
+}
@@ -0,0 +1,102 @@
+package com.floye.coinflip.utils;
+
+import net.impactdev.impactor.api.economy.currency.Currency;
+import net.kyori.adventure.key.InvalidKeyException;
+import net.kyori.adventure.key.Key;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table des devises construite à partir de la config : alias ↔ clé complète ↔ {@link Currency}
+ * ↔ taxe, en O(1). Immuable une fois construite ; un reloadconfig en construit une nouvelle.
+ * Les devises Impactor sont résolues à la première demande (le service n'est pas encore
+ * prêt au chargement de la config) puis gardées.
+ */
+public class CurrencyRegistry {
+    private final Map<String, String> keyByAlias;
+    private final Map<String, String> aliasByKey;
+    private final Map<String, Double> taxByKey;
+    private final List<String> aliases;
+    private final double defaultTax;
+    // Aussi pour les clés hors config (flips restaurés après retrait d'un alias)
+    private final Map<String, Optional<Currency>> resolved = new ConcurrentHashMap<>();
+
+    public CurrencyRegistry(Map<String, String> currencyAliases, Map<String, Double> currencyTaxes, double defaultTax) {
+        Map<String, String> keyByAlias = new HashMap<>();
+        Map<String, String> aliasByKey = new HashMap<>();
+        Map<String, Double> taxByKey = new HashMap<>();
+
+        for (Map.Entry<String, String> entry : currencyAliases.entrySet()) {
+            String alias = entry.getKey();
+            String key = entry.getValue();
+            keyByAlias.put(alias, key);
+            // Premier alias rencontré pour une clé, comme l'ancienne recherche linéaire
+            aliasByKey.putIfAbsent(key, alias);
+            taxByKey.putIfAbsent(key, currencyTaxes.getOrDefault(alias, defaultTax));
+        }
+
+        this.keyByAlias = Map.copyOf(keyByAlias);
+        this.aliasByKey = Map.copyOf(aliasByKey);
+        this.taxByKey = Map.copyOf(taxByKey);
+        this.aliases = Collections.unmodifiableList(new ArrayList<>(currencyAliases.keySet()));
+        this.defaultTax = defaultTax;
+    }
+
+    public boolean isAlias(String alias) {
+        return keyByAlias.containsKey(alias);
+    }
+
+    public String keyOf(String alias, String fallback) {
+        return keyByAlias.getOrDefault(alias, fallback);
+    }
+
+    // Clé inconnue : renvoyée telle quelle pour l'affichage
+    public String aliasOf(String fullKey) {
+        return aliasByKey.getOrDefault(fullKey, fullKey);
+    }
+
+    public List<String> aliases() {
+        return aliases;
+    }
+
+    public Set<String> keys() {
+        return aliasByKey.keySet();
+    }
+
+    public double taxForKey(String fullKey) {
+        return taxByKey.getOrDefault(fullKey, defaultTax);
+    }
+
+    public Optional<Currency> currency(String fullKey) {
+        Optional<Currency> currency = resolved.get(fullKey);
+        if (currency != null) {
+            return currency;
+        }
+
+        currency = resolve(fullKey);
+        // Une devise absente peut être enregistrée plus tard par Impactor : seules les réussites sont gardées
+        if (currency.isPresent()) {
+            resolved.putIfAbsent(fullKey, currency);
+        }
+        return currency;
+    }
+
+    public void clearResolved() {
+        resolved.clear();
+    }
+
+    private static Optional<Currency> resolve(String fullKey) {
+        try {
+            return EconomyHandler.service().currencies().currency(Key.key(fullKey));
+        } catch (InvalidKeyException e) {
+            return Optional.empty();
+        }
+    }
+}
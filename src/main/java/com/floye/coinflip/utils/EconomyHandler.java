@@ -1,12 +1,12 @@
 package com.floye.coinflip.utils;
 
+import com.floye.coinflip.CoinFlipMetrics;
+import com.floye.coinflip.CoinFlipMod;
 import net.impactdev.impactor.api.economy.EconomyService;
 import net.impactdev.impactor.api.economy.accounts.Account;
 import net.impactdev.impactor.api.economy.currency.Currency;
 import net.impactdev.impactor.api.economy.transactions.EconomyTransaction;
 import net.impactdev.impactor.api.economy.transactions.details.EconomyResultType;
-import net.kyori.adventure.key.InvalidKeyException;
-import net.kyori.adventure.key.Key;
 import net.kyori.adventure.text.Component;
 import net.minecraft.text.Text;
 import org.jetbrains.annotations.NotNull;
@@ -20,35 +20,77 @@ import java.util.UUID;
 import java.util.concurrent.CompletableFuture;
 
 public class EconomyHandler {
+    private static final AccountCache ACCOUNTS = new AccountCache(EconomyHandler::resolveAccount);
+    // Service de remplacement (économie en mémoire des benchmarks et de la simulation) ; null = Impactor
+    private static volatile EconomyService serviceOverride;
 
-    // Obtenir un compte pour une devise spécifique
+    public static EconomyService service() {
+        EconomyService override = serviceOverride;
+        return override != null ? override : EconomyService.instance();
+    }
+
+    // Comptes et devises déjà résolus appartiennent à l'ancien service : on les oublie
+    public static void useService(EconomyService service) {
+        serviceOverride = service;
+        ACCOUNTS.clear();
+        CoinFlipMod.config.getCurrencyRegistry().clearResolved();
+    }
+
+    // Obtenir un compte pour une devise spécifique (résolu une fois puis gardé en cache)
     public static CompletableFuture<Account> getAccount(UUID playerId, String currencyKey) {
-        EconomyService service = EconomyService.instance();
+        return ACCOUNTS.get(playerId, currencyKey);
+    }
+
+    public static AccountCache accounts() {
+        return ACCOUNTS;
+    }
+
+    private static CompletableFuture<Account> resolveAccount(UUID playerId, String currencyKey) {
+        long start = System.nanoTime();
+        EconomyService service = service();
         Optional<Currency> currency = getCurrency(currencyKey);
 
+        CompletableFuture<Account> account;
         if (currency.isPresent()) {
-            return service.account(currency.get(), playerId);
+            account = service.account(currency.get(), playerId);
         } else {
             // Fallback sur la devise par défaut si la devise spécifiée n'existe pas
-            return service.account(playerId);
+            account = service.account(playerId);
         }
+        return account.whenComplete((result, error) ->
+                CoinFlipMod.metrics.recordSince(CoinFlipMetrics.Timer.ECONOMY_ACCOUNT, start));
     }
 
     // Obtenir le solde d'un compte
     public static double getBalance(Account account) {
-        return account.balance().doubleValue();
+        long start = System.nanoTime();
+        try {
+            return account.balance().doubleValue();
+        } finally {
+            CoinFlipMod.metrics.recordSince(CoinFlipMetrics.Timer.ECONOMY_BALANCE, start);
+        }
     }
 
     // Retirer de l'argent d'un compte
     public static boolean remove(Account account, double amount) {
-        EconomyTransaction transaction = account.withdraw(BigDecimal.valueOf(amount));
-        return transaction.result() == EconomyResultType.SUCCESS;
+        long start = System.nanoTime();
+        try {
+            EconomyTransaction transaction = account.withdraw(BigDecimal.valueOf(amount));
+            return transaction.result() == EconomyResultType.SUCCESS;
+        } finally {
+            CoinFlipMod.metrics.recordSince(CoinFlipMetrics.Timer.ECONOMY_WITHDRAW, start);
+        }
     }
 
     // Ajouter de l'argent à un compte
     public static boolean add(Account account, double amount) {
-        EconomyTransaction transaction = account.deposit(BigDecimal.valueOf(amount));
-        return transaction.result() == EconomyResultType.SUCCESS;
+        long start = System.nanoTime();
+        try {
+            EconomyTransaction transaction = account.deposit(BigDecimal.valueOf(amount));
+            return transaction.result() == EconomyResultType.SUCCESS;
+        } finally {
+            CoinFlipMod.metrics.recordSince(CoinFlipMetrics.Timer.ECONOMY_DEPOSIT, start);
+        }
     }
 
     // Vérifier si une devise est valide
@@ -62,16 +104,12 @@ public class EconomyHandler {
 
     // Obtenir la devise principale
     public static Currency getPrimaryCurrency() {
-        return EconomyService.instance().currencies().primary();
+        return service().currencies().primary();
     }
 
-    // Obtenir une devise par sa clé
+    // Obtenir une devise par sa clé (résolue une seule fois par le registre des devises)
     public static Optional<Currency> getCurrency(String currencyKey) {
-        try {
-            return EconomyService.instance().currencies().currency(Key.key(currencyKey));
-        } catch (InvalidKeyException e) {
-            return Optional.empty();
-        }
+        return CoinFlipMod.config.getCurrencyRegistry().currency(currencyKey);
     }
 
     // Formater un montant avec une devise